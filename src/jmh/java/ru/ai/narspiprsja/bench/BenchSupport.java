@@ -0,0 +1,68 @@
+package ru.ai.narspiprsja.bench;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ai.narspiprsja.config.OpenConfig;
+import ru.ai.narspiprsja.property.ParserProperty;
+import ru.ai.narspiprsja.tools.OpenTools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Сборка бинов пайплайна без Spring-контекста и загрузка корпуса страниц.
+ */
+public final class BenchSupport {
+
+    public static final String BASE_URL = "https://gov.cap.ru/press_center/news";
+
+    private BenchSupport() {
+    }
+
+    public static OpenConfig openConfig() {
+        OpenConfig openConfig = new OpenConfig();
+        ReflectionTestUtils.setField(openConfig, "abbreviationsFile", new ClassPathResource("abbreviations.txt"));
+        openConfig.loadAbbreviations();
+        return openConfig;
+    }
+
+    public static OpenTools openTools(OpenConfig openConfig) throws Exception {
+        OpenTools openTools = new OpenTools(openConfig, new SimpleMeterRegistry());
+        openTools.init();
+        return openTools;
+    }
+
+    public static ParserProperty parserProperty() {
+        ParserProperty property = new ParserProperty();
+        property.setMaxTokens(256);
+        property.setOverlapTokens(32);
+        // Иначе parseArticle со второй итерации мерил бы только попадание в кэш
+        property.setDedupCapacity(0);
+        return property;
+    }
+
+    /**
+     * HTML статей из classpath:corpus/*.html в порядке имён файлов.
+     */
+    public static List<String> corpus() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:corpus/*.html");
+        Arrays.sort(resources, Comparator.comparing(Resource::getFilename));
+
+        List<String> pages = new ArrayList<>();
+        for (Resource resource : resources) {
+            try (InputStream in = resource.getInputStream()) {
+                pages.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        if (pages.isEmpty()) throw new IllegalStateException("Корпус corpus/*.html пуст");
+        return pages;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.ai.narspiprsja.bench;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.ai.narspiprsja.tools.HtmlExtractor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Извлечение блока страницы: полный DOM (прежний путь) против HtmlExtractor.
+ * Одна операция — весь корпус. Выигрыш по памяти смотреть в gc.alloc.rate.norm (-prof gc).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractBenchmark {
+
+    @Param({"div.news_text", "div.news_list"})
+    public String query;
+
+    private List<byte[]> pages;
+
+    @Setup
+    public void setup() throws IOException {
+        pages = new ArrayList<>();
+        for (String page : BenchSupport.corpus()) {
+            pages.add(page.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void dom(Blackhole bh) throws IOException {
+        for (byte[] page : pages) {
+            Element block = Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", BenchSupport.BASE_URL).selectFirst(query);
+            bh.consume(block.text());
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole bh) throws IOException {
+        for (byte[] page : pages) {
+            Element block = HtmlExtractor.extract(page, "UTF-8", BenchSupport.BASE_URL, query);
+            bh.consume(block.text());
+        }
+    }
+}
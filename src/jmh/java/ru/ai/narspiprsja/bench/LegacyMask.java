@@ -0,0 +1,81 @@
+package ru.ai.narspiprsja.bench;
+
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Прежняя реализация OpenConfig.mask/unmask на цепочке регулярных выражений.
+ * Оставлена только как точка отсчёта для сравнения в бенчмарках.
+ */
+public class LegacyMask {
+
+    private static final Pattern INITIALS_SEQUENCE =
+            Pattern.compile("\\b(?:[А-ЯЁ]\\.)(?:\\s*[А-ЯЁ]\\.){1,}");
+
+    private static final Pattern NUMBER_DOT_PATTERN =
+            Pattern.compile("\\b(\\d+)\\.(?!\\d)");
+
+    private static final Pattern SINGLE_LETTER_ABBR =
+            Pattern.compile("\\b([А-ЯЁа-яё])\\.(?!\\s*[А-ЯЁа-яё]\\.)");
+
+    private static final Pattern TWO_OR_THREE_LETTER_ABBR =
+            Pattern.compile("\\b([А-ЯЁа-яё]{2,3})\\.");
+
+    private final Set<String> abbrs;
+
+    public LegacyMask(Set<String> abbrs) {
+        this.abbrs = abbrs;
+    }
+
+    private String regexReplaceAll(String input, Pattern p, Function<MatchResult, String> replacer) {
+        Matcher m = p.matcher(input);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            MatchResult mr = m.toMatchResult();
+            String repl = replacer.apply(mr);
+            m.appendReplacement(sb, Matcher.quoteReplacement(repl));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    public String mask(String text) {
+        String result = text;
+
+        if (result == null || result.isEmpty()) return result;
+
+        result = result.replaceAll("т\\.д\\.", "т<DOT>д<DOT>");
+        result = result.replaceAll("т\\.е\\.", "т<DOT>е<DOT>");
+        result = result.replaceAll("т\\.п\\.", "т<DOT>п<DOT>");
+
+        result = regexReplaceAll(result, INITIALS_SEQUENCE, mr -> mr.group().replaceAll("\\.\\s*", "<DOT>"));
+        result = regexReplaceAll(result, NUMBER_DOT_PATTERN, mr -> mr.group(1) + "<DOT>");
+
+        for (String abbr : abbrs) {
+            if (abbr == null || abbr.isEmpty()) continue;
+            String mask = abbr.replace(".", "<DOT>");
+            result = result.replace(abbr, mask);
+        }
+
+        result = regexReplaceAll(result, SINGLE_LETTER_ABBR, mr -> mr.group(1) + "<DOT>");
+        result = regexReplaceAll(result, TWO_OR_THREE_LETTER_ABBR, mr -> mr.group(1) + "<DOT>");
+
+        return result;
+    }
+
+    public String unmask(String text) {
+        if (text == null) return null;
+        String res = text.replace("<DOT>", ".");
+
+        String prev;
+        do {
+            prev = res;
+            res = res.replaceAll("([А-ЯЁ])\\.\\s*([А-ЯЁ])\\.", "$1. $2.");
+        } while (!res.equals(prev));
+
+        return res;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.ai.narspiprsja.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ai.narspiprsja.config.OpenConfig;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение OpenConfig.mask/unmask с прежней цепочкой регулярных выражений
+ * на эталонном корпусе mask/golden.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaskBenchmark {
+
+    private OpenConfig openConfig;
+    private LegacyMask legacyMask;
+
+    private String text;
+    private String masked;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        openConfig = BenchSupport.openConfig();
+        legacyMask = new LegacyMask((Set<String>) ReflectionTestUtils.getField(openConfig, "abbrs"));
+
+        List<String> inputs = new ArrayList<>();
+        try (InputStream in = new ClassPathResource("mask/golden.json").getInputStream()) {
+            for (JsonNode node : new ObjectMapper().readTree(in)) {
+                inputs.add(node.get("input").asText());
+            }
+        }
+        text = String.join(" ", inputs);
+        masked = openConfig.mask(text);
+
+        if (!legacyMask.mask(text).equals(masked)) {
+            throw new IllegalStateException("mask расходится с прежней реализацией");
+        }
+    }
+
+    @Benchmark
+    public String mask() {
+        return openConfig.mask(text);
+    }
+
+    @Benchmark
+    public String maskLegacy() {
+        return legacyMask.mask(text);
+    }
+
+    @Benchmark
+    public String unmask() {
+        return openConfig.unmask(masked);
+    }
+
+    @Benchmark
+    public String unmaskLegacy() {
+        return legacyMask.unmask(masked);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.ai.narspiprsja.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+import org.springframework.core.ParameterizedTypeReference;
+import ru.ai.narspiprsja.body.PageReq;
+import ru.ai.narspiprsja.config.MessageCodecs;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+import ru.ai.narspiprsja.tools.ArchiveTools;
+import ru.ai.narspiprsja.tools.BreakerTools;
+import ru.ai.narspiprsja.tools.DedupTools;
+import ru.ai.narspiprsja.tools.HedgeTools;
+import ru.ai.narspiprsja.tools.JsoupFetcher;
+import ru.ai.narspiprsja.tools.MarkTools;
+import ru.ai.narspiprsja.tools.ParserTools;
+import ru.ai.narspiprsja.tools.RateTools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и декодирование пачки PageReq из всех статей корпуса во всех форматах и сжатиях.
+ * Статьи в пачке не повторяются, иначе сжатие выглядело бы лучше, чем на живых данных.
+ * Размер сообщения на проводе печатается в начале каждого прогона.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    @Param({"none", "gzip", "lz4", "zstd"})
+    public String compression;
+
+    private SmartMessageConverter converter;
+    private MessagePostProcessor compressor;
+    private DelegatingDecompressingPostProcessor decompressor;
+
+    private PageReq req;
+    private Message encoded;
+
+    private final ParameterizedTypeReference<PageReq> type = new ParameterizedTypeReference<>() {};
+
+    @Setup
+    public void setup() throws Exception {
+        ParserProperty parserProperty = BenchSupport.parserProperty();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ParserTools parserTools = new ParserTools(parserProperty, BenchSupport.openTools(BenchSupport.openConfig()),
+                new MarkTools(parserProperty, new ObjectMapper()), new DedupTools(parserProperty), new JsoupFetcher(),
+                new RateTools(parserProperty), new BreakerTools(parserProperty, registry),
+                new HedgeTools(parserProperty, registry), new ArchiveTools(parserProperty), registry);
+
+        List<String> html = BenchSupport.corpus();
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < html.size(); i++) {
+            String url = BenchSupport.BASE_URL + "/" + i;
+            parserTools.parseArticle(i, url, Jsoup.parse(html.get(i), url)).ifPresent(pages::add);
+        }
+        req = new PageReq(UUID.randomUUID(), pages);
+
+        converter = MessageCodecs.converter(format);
+        compressor = MessageCodecs.compressor(compression);
+        decompressor = MessageCodecs.decompressor();
+        encoded = encode();
+
+        System.out.printf("%n%s/%s: %d bytes%n", format, compression, encoded.getBody().length);
+    }
+
+    @Benchmark
+    public Message encode() {
+        Message message = converter.toMessage(req, new MessageProperties());
+        return compressor == null ? message : compressor.postProcessMessage(message);
+    }
+
+    // Распаковка правит свойства сообщения на месте, поэтому каждый раз новое сообщение
+    @Benchmark
+    public Object decode() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(encoded.getMessageProperties().getContentType());
+        properties.setContentEncoding(encoded.getMessageProperties().getContentEncoding());
+        return converter.fromMessage(decompressor.postProcessMessage(new Message(encoded.getBody(), properties)), type);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.ai.narspiprsja.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.ai.narspiprsja.config.OpenConfig;
+import ru.ai.narspiprsja.property.ParserProperty;
+import ru.ai.narspiprsja.tools.ArchiveTools;
+import ru.ai.narspiprsja.tools.BreakerTools;
+import ru.ai.narspiprsja.tools.DedupTools;
+import ru.ai.narspiprsja.tools.HedgeTools;
+import ru.ai.narspiprsja.tools.JsoupFetcher;
+import ru.ai.narspiprsja.tools.MarkTools;
+import ru.ai.narspiprsja.tools.OpenTools;
+import ru.ai.narspiprsja.tools.ParserTools;
+import ru.ai.narspiprsja.tools.RateTools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность по стадиям разбора статьи на корпусе corpus/*.html.
+ * Одна операция — весь корпус. Для аллокаций запускать с -prof gc (включено в jmh.args).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private OpenConfig openConfig;
+    private OpenTools openTools;
+    private ParserTools parserTools;
+    private ParserProperty parserProperty;
+
+    private List<String> html;
+    private List<String> texts;
+    private List<String> normalized;
+    private List<List<String>> sentences;
+
+    @Setup
+    public void setup() throws Exception {
+        parserProperty = BenchSupport.parserProperty();
+        openConfig = BenchSupport.openConfig();
+        openTools = BenchSupport.openTools(openConfig);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        parserTools = new ParserTools(parserProperty, openTools,
+                new MarkTools(parserProperty, new ObjectMapper()), new DedupTools(parserProperty), new JsoupFetcher(),
+                new RateTools(parserProperty), new BreakerTools(parserProperty, registry),
+                new HedgeTools(parserProperty, registry), new ArchiveTools(parserProperty), registry);
+
+        html = BenchSupport.corpus();
+        texts = new ArrayList<>();
+        normalized = new ArrayList<>();
+        sentences = new ArrayList<>();
+        for (String page : html) {
+            Element block = Jsoup.parse(page, BenchSupport.BASE_URL).selectFirst("div.news_text");
+            if (block == null) throw new IllegalStateException("В странице корпуса нет div.news_text");
+
+            texts.add(block.text());
+            normalized.add(openTools.normalizeText(block.text()));
+            sentences.add(openTools.detectSentences(block.text()));
+        }
+    }
+
+    @Benchmark
+    public void parseHtml(Blackhole bh) {
+        for (String page : html) {
+            bh.consume(Jsoup.parse(page, BenchSupport.BASE_URL));
+        }
+    }
+
+    @Benchmark
+    public void normalizeText(Blackhole bh) {
+        for (String text : texts) {
+            bh.consume(openTools.normalizeText(text));
+        }
+    }
+
+    @Benchmark
+    public void mask(Blackhole bh) {
+        for (String text : normalized) {
+            bh.consume(openConfig.mask(text));
+        }
+    }
+
+    @Benchmark
+    public void unmask(Blackhole bh) {
+        for (String text : normalized) {
+            bh.consume(openConfig.unmask(text));
+        }
+    }
+
+    @Benchmark
+    public void detectSentences(Blackhole bh) {
+        for (String text : texts) {
+            bh.consume(openTools.detectSentences(text));
+        }
+    }
+
+    @Benchmark
+    public void mergeShortChunks(Blackhole bh) {
+        for (List<String> chunks : sentences) {
+            bh.consume(openTools.mergeShortChunks(chunks, parserProperty.getMinSentenceChars()));
+        }
+    }
+
+    @Benchmark
+    public void chunkSentences(Blackhole bh) {
+        for (List<String> chunks : sentences) {
+            bh.consume(openTools.chunkSentences(chunks, parserProperty.getMaxTokens(), parserProperty.getOverlapTokens()));
+        }
+    }
+
+    // parseArticlePage без сети: разбор HTML и вся обработка текста
+    @Benchmark
+    public void parseArticle(Blackhole bh) {
+        long postId = 0;
+        for (String page : html) {
+            Document doc = Jsoup.parse(page, BenchSupport.BASE_URL);
+            bh.consume(parserTools.parseArticle(postId++, BenchSupport.BASE_URL, doc));
+        }
+    }
+}
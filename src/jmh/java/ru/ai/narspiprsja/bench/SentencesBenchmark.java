@@ -0,0 +1,104 @@
+package ru.ai.narspiprsja.bench;
+
+import opennlp.tools.sentdetect.SentenceModel;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import ru.ai.narspiprsja.config.OpenConfig;
+import ru.ai.narspiprsja.tools.OpenTools;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение normalizeText, detectSentences и mergeShortChunks из OpenTools с прежней реализацией
+ * на тексте статей корпуса: article — все статьи подряд, long — они же двадцать раз,
+ * как длинный пресс-релиз. Результаты обеих реализаций сверяются в setup.
+ * Расход памяти — с -prof gc (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SentencesBenchmark {
+
+    @Param({"article", "long"})
+    public String size;
+
+    private OpenTools openTools;
+    private LegacySentences legacy;
+
+    private String text;
+    private List<String> sentences;
+
+    @Setup
+    public void setup() throws Exception {
+        OpenConfig openConfig = BenchSupport.openConfig();
+        openTools = BenchSupport.openTools(openConfig);
+        try (InputStream in = new ClassPathResource("models/opennlp-ru-ud-gsd-sentence-1.3-2.5.4.bin").getInputStream()) {
+            legacy = new LegacySentences(openConfig, new SentenceModel(in));
+        }
+
+        List<String> texts = new ArrayList<>();
+        for (String page : BenchSupport.corpus()) {
+            Element block = Jsoup.parse(page, BenchSupport.BASE_URL).selectFirst("div.news_text");
+            if (block == null) throw new IllegalStateException("В странице корпуса нет div.news_text");
+            texts.add(block.text());
+        }
+        String joined = String.join(" ", texts);
+        text = "long".equals(size) ? String.join(" ", Collections.nCopies(20, joined)) : joined;
+        sentences = openTools.detectSentences(text);
+
+        if (!legacy.normalizeText(text).equals(openTools.normalizeText(text))
+                || !legacy.detectSentences(text).equals(sentences)
+                || !legacy.mergeShortChunks(sentences, 80).equals(openTools.mergeShortChunks(sentences, 80))) {
+            throw new IllegalStateException("OpenTools расходится с прежней реализацией");
+        }
+    }
+
+    @Benchmark
+    public String normalizeText() {
+        return openTools.normalizeText(text);
+    }
+
+    @Benchmark
+    public String normalizeTextLegacy() {
+        return legacy.normalizeText(text);
+    }
+
+    @Benchmark
+    public List<String> detectSentences() {
+        return openTools.detectSentences(text);
+    }
+
+    @Benchmark
+    public List<String> detectSentencesLegacy() {
+        return legacy.detectSentences(text);
+    }
+
+    @Benchmark
+    public List<String> mergeShortChunks() {
+        return openTools.mergeShortChunks(sentences, 80);
+    }
+
+    @Benchmark
+    public List<String> mergeShortChunksLegacy() {
+        return legacy.mergeShortChunks(sentences, 80);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ai.narspiprsja.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Параметры прогона: аргументы --load.* настраивают заглушки, остальные уходят приложению как есть
+ * (например --parse.config.fetch-concurrency=32).
+ *
+ * @param parts      части (поддомены), у каждой своя лента
+ * @param pages      страниц ленты у каждой части
+ * @param items      новостей на странице ленты
+ * @param sentences  предложений в статье
+ * @param latencyMs  задержка каждого ответа сайта
+ * @param jitterMs   случайная добавка к задержке, от 0 до jitterMs
+ * @param errorRate  доля ответов 503
+ * @param idleMs     прогон заканчивается, если столько времени не приходило ни одной статьи
+ * @param timeoutMs  предельная длительность прогона
+ */
+record LoadOptions(
+        List<String> parts,
+        int pages,
+        int items,
+        int sentences,
+        long latencyMs,
+        long jitterMs,
+        double errorRate,
+        long idleMs,
+        long timeoutMs,
+        List<String> appArgs
+) {
+    private static final String PREFIX = "--load.";
+
+    int expected() {
+        return parts.size() * pages * items;
+    }
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> load = new HashMap<>();
+        List<String> app = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith(PREFIX)) {
+                app.add(arg);
+                continue;
+            }
+
+            int eq = arg.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Ожидается --load.ключ=значение: " + arg);
+            load.put(arg.substring(PREFIX.length(), eq), arg.substring(eq + 1));
+        }
+
+        LoadOptions options = new LoadOptions(
+                List.of(load.getOrDefault("parts", "gov,minzdrav,minobr,minsport").split(",")),
+                Integer.parseInt(load.getOrDefault("pages", "10")),
+                Integer.parseInt(load.getOrDefault("items", "20")),
+                Integer.parseInt(load.getOrDefault("sentences", "40")),
+                Long.parseLong(load.getOrDefault("latency-ms", "50")),
+                Long.parseLong(load.getOrDefault("jitter-ms", "50")),
+                Double.parseDouble(load.getOrDefault("error-rate", "0")),
+                Long.parseLong(load.getOrDefault("idle-ms", "15000")),
+                Long.parseLong(load.getOrDefault("timeout-ms", "600000")),
+                List.copyOf(app));
+
+        load.keySet().removeAll(List.of("parts", "pages", "items", "sentences", "latency-ms", "jitter-ms",
+                "error-rate", "idle-ms", "timeout-ms"));
+        if (!load.isEmpty()) throw new IllegalArgumentException("Неизвестные параметры: " + load.keySet());
+        return options;
+    }
+}
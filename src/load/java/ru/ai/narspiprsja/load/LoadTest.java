@@ -0,0 +1,195 @@
+package ru.ai.narspiprsja.load;
+
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.ai.narspiprsja.NarspiPrsJaApplication;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон всего цикла RabbitTools.task → ParserTools → OpenTools → PublishTools
+ * против StubSite и StubBroker, без сети и настоящего шлюза. Приложение поднимается целиком
+ * со своими настройками (аргументы без --load. уходят ему), данные — во временном каталоге.
+ * Прогон идёт, пока не придут все статьи, idleMs без новых статей или timeoutMs;
+ * в конце печатаются статьи в секунду, p50/p99 задержки статьи и пик занятой кучи.
+ * <p>
+ * mvn -Pload test-compile exec:exec -Dload.args="--load.pages=20 --load.error-rate=0.02"
+ * <p>
+ * Все части отдаёт один хост 127.0.0.1, поэтому лимиты на хост (host-concurrency, rate-*) здесь общие
+ * для всех частей; по умолчанию они подняты, чтобы мерить сам парсер, а не вежливость к сайту.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        Path data = Files.createTempDirectory("narspi-load");
+
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.main.web-application-type", "none");
+        defaults.put("parse.abbreviations-file", "classpath:abbreviations.txt");
+        defaults.put("parse.config.parts", String.join(",", options.parts()));
+        defaults.put("parse.config.date", "01.01.2025");
+        defaults.put("parse.config.max-tokens", 256);
+        defaults.put("parse.config.overlap-tokens", 32);
+        defaults.put("parse.config.host-concurrency", 64);
+        defaults.put("parse.config.rate-initial", 10_000);
+        defaults.put("parse.config.rate-max", 10_000);
+        defaults.put("parse.config.rate-burst", 1_000);
+        defaults.put("parse.config.mark-file", data.resolve("marks.json").toString());
+        defaults.put("parse.config.publish-spill-file", data.resolve("spill.jsonl").toString());
+
+        String format = options.appArgs().stream()
+                .filter(arg -> arg.startsWith("--parse.config.message-format="))
+                .map(arg -> arg.substring(arg.indexOf('=') + 1))
+                .reduce((first, last) -> last)
+                .orElse("json");
+
+        try (StubSite site = new StubSite(options); StubBroker broker = new StubBroker(format)) {
+            defaults.put("parse.config.base-url", site.baseUrl());
+
+            SpringApplication app = new SpringApplication(NarspiPrsJaApplication.class);
+            app.setDefaultProperties(defaults);
+            // Свой ConnectionFactory отключает автоконфигурацию Boot: приложение ходит в StubBroker
+            app.addInitializers(context -> context.getBeanFactory()
+                    .registerSingleton("connectionFactory", (ConnectionFactory) broker.connectionFactory()));
+
+            HeapSampler heap = new HeapSampler();
+            long started = System.nanoTime();
+            ConfigurableApplicationContext context = app.run(options.appArgs().toArray(String[]::new));
+            try {
+                heap.start();
+                await(options, broker, started);
+                heap.stop();
+            } finally {
+                context.close();
+            }
+
+            report(options, broker.stats(), site, heap);
+        }
+
+        // Потоки очередей rabbitmq-mock не останавливаются с соединением
+        System.exit(0);
+    }
+
+    private static void await(LoadOptions options, StubBroker broker, long started) throws InterruptedException {
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(options.timeoutMs());
+        int seen = -1;
+        long progressAt = System.nanoTime();
+
+        while (System.nanoTime() < deadline) {
+            int articles = broker.stats().articles();
+            if (articles >= options.expected()) return;
+
+            if (articles != seen) {
+                seen = articles;
+                progressAt = System.nanoTime();
+            } else if (System.nanoTime() - progressAt > TimeUnit.MILLISECONDS.toNanos(options.idleMs())) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static void report(LoadOptions options, StubBroker.Stats stats, StubSite site, HeapSampler heap) {
+        List<Long> latencies = new ArrayList<>(stats.latencies());
+        latencies.sort(null);
+
+        double seconds = stats.articles() == 0 ? 0 : (stats.lastPage() - stats.firstListed()) / 1e9;
+
+        System.out.println();
+        System.out.printf("parts %s, %d pages x %d items, %d sentences, latency %d+%d ms, errors %.1f%%%n",
+                options.parts(), options.pages(), options.items(), options.sentences(),
+                options.latencyMs(), options.jitterMs(), options.errorRate() * 100);
+        System.out.printf("articles      %d / %d in %.1f s%n", stats.articles(), options.expected(), seconds);
+        System.out.printf("throughput    %.1f articles/s%n", seconds > 0 ? stats.articles() / seconds : 0.0);
+        System.out.printf("latency       p50 %d ms, p99 %d ms, max %d ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        System.out.printf("site          %d requests, %d errors%n", site.requests(), site.errors());
+        System.out.printf("heap          peak %d MB of %d MB, gc %d collections, %d ms%n",
+                heap.peak() >> 20, heap.max() >> 20, heap.collections(), heap.gcMillis());
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.clamp(index, 0, sorted.size() - 1)));
+    }
+
+    /**
+     * Пик занятой кучи по опросу раз в 50 мс и счётчики GC за прогон.
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+        private long collections;
+        private long gcMillis;
+        private Thread thread;
+
+        void start() {
+            long[] gc = gc();
+            collections = -gc[0];
+            gcMillis = -gc[1];
+
+            thread = Thread.ofPlatform().daemon().name("heap-sampler").start(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        void stop() {
+            if (thread == null) return;
+
+            thread.interrupt();
+            long[] gc = gc();
+            collections += gc[0];
+            gcMillis += gc[1];
+        }
+
+        private static long[] gc() {
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, bean.getCollectionCount());
+                millis += Math.max(0, bean.getCollectionTime());
+            }
+            return new long[]{count, millis};
+        }
+
+        long peak() {
+            return peak.get();
+        }
+
+        long max() {
+            return memory.getHeapMemoryUsage().getMax();
+        }
+
+        long collections() {
+            return collections;
+        }
+
+        long gcMillis() {
+            return gcMillis;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ru.ai.narspiprsja.load;
+
+import com.github.fridujo.rabbitmq.mock.MockConnectionFactory;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+import org.springframework.core.ParameterizedTypeReference;
+import ru.ai.narspiprsja.body.PageReq;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.body.UrlsRes;
+import ru.ai.narspiprsja.config.MessageCodecs;
+import ru.ai.narspiprsja.config.RabbitConfig;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.model.Site;
+import ru.ai.narspiprsja.model.Url;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Брокер в памяти процесса (rabbitmq-mock) вместо RabbitMQ, с обеими сторонами шлюза на нём:
+ * на gtw.urls.request.queue отвечает UrlsRes со всеми присланными ссылками, из gtw.page.request.queue
+ * забирает пачки PageReq. Приложение ходит в него через обычный CachingConnectionFactory, так что
+ * direct reply-to, publisher confirms, форматы и сжатие сообщений работают как с настоящим брокером.
+ * Задержка статьи — от ответа шлюза со ссылкой до прихода её чанков в gtw.page.request.queue.
+ * Пустую очередь rabbitmq-mock опрашивает раз в 30 мс, так что в задержку входит до 30 мс на каждую
+ * очередь: прогоны сравниваются между собой, а не с RabbitMQ.
+ */
+final class StubBroker implements AutoCloseable {
+    private final MockConnectionFactory factory = new MockConnectionFactory();
+    private final RabbitConfig names = new RabbitConfig();
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    private final SmartMessageConverter converter;
+    private final DelegatingDecompressingPostProcessor decompressor = MessageCodecs.decompressor();
+
+    private final Connection connection;
+    private final AtomicLong postIds = new AtomicLong();
+
+    // Когда ссылка ушла парсеру в ответе шлюза
+    private final Map<String, Long> listedAt = new ConcurrentHashMap<>();
+
+    private final ReentrantLock statsLock = new ReentrantLock();
+    private final List<Long> latencies = new ArrayList<>();
+    private long firstListed;
+    private long lastPage;
+
+    StubBroker(String messageFormat) throws IOException {
+        this.converter = MessageCodecs.converter(messageFormat);
+        this.connection = factory.newConnection();
+
+        Channel setup = connection.createChannel();
+        setup.exchangeDeclare(names.getGtwExc(), "direct", true);
+        for (String[] queue : new String[][]{
+                {names.getUrlsReqQueue(), names.getUrlsReqRoutingKey()},
+                {names.getPageReqQueue(), names.getPageReqRoutingKey()}}) {
+            setup.queueDeclare(queue[0], true, false, false, null);
+            setup.queueBind(queue[0], names.getGtwExc(), queue[1]);
+        }
+
+        Channel gateway = connection.createChannel();
+        gateway.basicConsume(names.getUrlsReqQueue(), true, new DefaultConsumer(gateway) {
+            @Override
+            public void handleDelivery(String tag, Envelope envelope, AMQP.BasicProperties props, byte[] body)
+                    throws IOException {
+                answerUrls(gateway, envelope, props, body);
+            }
+        });
+
+        Channel pages = connection.createChannel();
+        pages.basicConsume(names.getPageReqQueue(), true, new DefaultConsumer(pages) {
+            @Override
+            public void handleDelivery(String tag, Envelope envelope, AMQP.BasicProperties props, byte[] body) {
+                receivePages(envelope, props, body);
+            }
+        });
+    }
+
+    // Свой ConnectionFactory обходит автоконфигурацию, поэтому confirms (spring.rabbitmq.publisher-confirm-type) — здесь
+    CachingConnectionFactory connectionFactory() {
+        CachingConnectionFactory caching = new CachingConnectionFactory(factory);
+        caching.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        return caching;
+    }
+
+    private Object decode(Envelope envelope, AMQP.BasicProperties props, byte[] body,
+                          ParameterizedTypeReference<?> type) {
+        MessageProperties properties = propertiesConverter.toMessageProperties(
+                props, envelope, StandardCharsets.UTF_8.name());
+        return converter.fromMessage(decompressor.postProcessMessage(new Message(body, properties)), type);
+    }
+
+    private void answerUrls(Channel channel, Envelope envelope, AMQP.BasicProperties props, byte[] body)
+            throws IOException {
+        UrlsReq req = (UrlsReq) decode(envelope, props, body, new ParameterizedTypeReference<UrlsReq>() {});
+
+        long now = System.nanoTime();
+        List<Site> sites = new ArrayList<>();
+        for (Url url : req.data()) {
+            listedAt.putIfAbsent(url.link(), now);
+            sites.add(new Site(postIds.incrementAndGet(), url.link()));
+        }
+
+        statsLock.lock();
+        try {
+            if (firstListed == 0) firstListed = now;
+        } finally {
+            statsLock.unlock();
+        }
+
+        MessageProperties properties = new MessageProperties();
+        properties.setCorrelationId(props.getCorrelationId());
+        Message reply = converter.toMessage(new UrlsRes(req.uuid(), sites), properties);
+
+        channel.basicPublish("", props.getReplyTo(),
+                propertiesConverter.fromMessageProperties(reply.getMessageProperties(), StandardCharsets.UTF_8.name()),
+                reply.getBody());
+    }
+
+    private void receivePages(Envelope envelope, AMQP.BasicProperties props, byte[] body) {
+        PageReq req = (PageReq) decode(envelope, props, body, new ParameterizedTypeReference<PageReq>() {});
+
+        long now = System.nanoTime();
+        statsLock.lock();
+        try {
+            for (Page page : req.pages()) {
+                Long listed = listedAt.remove(page.url());
+                if (listed != null) latencies.add(now - listed);
+            }
+            lastPage = now;
+        } finally {
+            statsLock.unlock();
+        }
+    }
+
+    /**
+     * Снимок статистики: задержки статей (нс), время первой ссылки и последней пачки (System.nanoTime).
+     */
+    Stats stats() {
+        statsLock.lock();
+        try {
+            return new Stats(List.copyOf(latencies), firstListed, lastPage);
+        } finally {
+            statsLock.unlock();
+        }
+    }
+
+    record Stats(List<Long> latencies, long firstListed, long lastPage) {
+        int articles() {
+            return latencies.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+}
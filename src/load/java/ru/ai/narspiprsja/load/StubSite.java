@@ -0,0 +1,155 @@
+package ru.ai.narspiprsja.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ru.ai.narspiprsja.config.ParserConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Заглушка cap.ru на 127.0.0.1: лента /{part}/news?date_start=..&page=N с items новостями на странице
+ * (после pages страниц — пустой news_list) и статьи /{part}/news/{n} с синтетическим текстом.
+ * Разметка повторяет то, что читает ParserTools: div.news_list/div.item_news и div.news_text.
+ * Каждый ответ задерживается на latencyMs плюс случайные до jitterMs, доля errorRate ответов — 503.
+ */
+final class StubSite implements AutoCloseable {
+    private static final String[] WORDS = {
+            "Глава", "Чувашии", "провёл", "совещание", "по", "вопросам", "ремонта", "дорог", "и", "мостов",
+            "в", "Чебоксарах", "министерство", "здравоохранения", "сообщило", "о", "начале", "работ",
+            "на", "объектах", "республики", "жители", "района", "получили", "новые", "автобусы",
+            "программа", "поддержки", "семей", "продлена", "до", "конца", "года", "участники", "форума"
+    };
+    private static final String[] ABBREVIATIONS = {"г.", "т.е.", "руб.", "им.", "ул.", "т.д."};
+
+    private final LoadOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LocalDateTime newest = LocalDateTime.now().withSecond(0).withNano(0);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    StubSite(LoadOptions options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // Задержка ответа — sleep в обработчике, поэтому каждый запрос на своём виртуальном потоке
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Шаблон для parse.config.base-url: %s — часть.
+     */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/%s/news";
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = options.latencyMs() + (options.jitterMs() > 0 ? random.nextLong(options.jitterMs() + 1) : 0);
+            if (delay > 0) Thread.sleep(delay);
+
+            if (random.nextDouble() < options.errorRate()) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // /{part}/news или /{part}/news/{n}
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length < 3 || !"news".equals(path[2])) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String html = path.length == 3
+                    ? listing(page(exchange.getRequestURI().getQuery()))
+                    : article(path[1], Integer.parseInt(path[3]));
+            respond(exchange, html);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(400, -1);
+        }
+    }
+
+    private static int page(String query) {
+        for (String param : query == null ? new String[0] : query.split("&")) {
+            if (param.startsWith("page=")) return Integer.parseInt(param.substring(5));
+        }
+        return 1;
+    }
+
+    // Новости идут от новых к старым, у каждой своя минута
+    private String listing(int page) {
+        StringBuilder html = new StringBuilder("<html><body><div class=\"news_list\">");
+        if (page <= options.pages()) {
+            for (int i = 0; i < options.items(); i++) {
+                int n = (page - 1) * options.items() + i;
+                html.append("<div class=\"item_news\"><a class=\"news-list_title\" href=\"/")
+                        .append(n)
+                        .append("\">Новость ")
+                        .append(n)
+                        .append("</a><div class=\"news-list_date\"><span>")
+                        .append(newest.minusMinutes(n).format(ParserConfig.FORMATTER))
+                        .append("</span></div></div>");
+            }
+        }
+        return html.append("</div></body></html>").toString();
+    }
+
+    // Текст статьи зависит только от части и номера, так что повторная загрузка даёт тот же текст
+    private String article(String part, int n) {
+        Random random = new Random(31L * part.hashCode() + n);
+        StringBuilder html = new StringBuilder("<html><head><title>Новость</title></head><body>")
+                .append("<div class=\"header\"><ul><li>Главная<li>Пресс-центр</ul></div>")
+                .append("<div class=\"news_text\"><p>");
+
+        for (int s = 0; s < options.sentences(); s++) {
+            int words = 6 + random.nextInt(14);
+            for (int w = 0; w < words; w++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                html.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word).append(' ');
+                if (random.nextInt(25) == 0) html.append(ABBREVIATIONS[random.nextInt(ABBREVIATIONS.length)]).append(' ');
+            }
+            html.setLength(html.length() - 1);
+            html.append(s % 8 == 7 ? ".</p><p>" : ". ");
+        }
+        return html.append("</p></div></body></html>").toString();
+    }
+
+    private static void respond(HttpExchange exchange, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
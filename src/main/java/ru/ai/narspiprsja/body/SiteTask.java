@@ -0,0 +1,12 @@
+package ru.ai.narspiprsja.body;
+
+import ru.ai.narspiprsja.model.Site;
+
+import java.util.UUID;
+
+public record SiteTask(
+        UUID uuid,
+        String part,
+        Site site
+) {
+}
@@ -0,0 +1,109 @@
+package ru.ai.narspiprsja.config;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Автомат Ахо — Корасик по словарю сокращений: за один проход по тексту
+ * находит все вхождения всех сокращений, в том числе пересекающиеся.
+ * Переходы сведены в плоскую таблицу, поэтому на символ текста приходится одно чтение массива.
+ */
+final class AbbrAutomaton {
+
+    /**
+     * Получатель найденных вхождений.
+     */
+    interface Hits {
+        void hit(int pattern, int start);
+    }
+
+    private final int[] lengths;
+
+    // Номер символа в алфавите словаря; 0 — символ не встречается ни в одном сокращении
+    private final char[] classes = new char[Character.MAX_VALUE + 1];
+    private final int alphabet;
+
+    // delta[узел * alphabet + класс] — следующий узел
+    private final int[] delta;
+    // Шаблон, заканчивающийся в узле (-1 — нет), и ближайший по суффиксным ссылкам узел с шаблоном
+    private final int[] pattern;
+    private final int[] output;
+    private final int[] fail;
+
+    AbbrAutomaton(List<String> patterns) {
+        int size = 1;
+        char next = 1;
+        for (String word : patterns) {
+            size += word.length();
+            for (int i = 0; i < word.length(); i++) {
+                if (classes[word.charAt(i)] == 0) classes[word.charAt(i)] = next++;
+            }
+        }
+        alphabet = next;
+
+        lengths = new int[patterns.size()];
+        delta = new int[size * alphabet];
+        pattern = new int[size];
+        output = new int[size];
+        fail = new int[size];
+        Arrays.fill(pattern, -1);
+
+        // Бор; 0 в delta до построения означает «перехода нет»
+        int nodes = 1;
+        for (int p = 0; p < patterns.size(); p++) {
+            String word = patterns.get(p);
+            lengths[p] = word.length();
+
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int idx = node * alphabet + classes[word.charAt(i)];
+                if (delta[idx] == 0) delta[idx] = nodes++;
+                node = delta[idx];
+            }
+            if (pattern[node] < 0) pattern[node] = p;
+        }
+
+        // Суффиксные ссылки в ширину; недостающие переходы берутся у узла по ссылке
+        Deque<Integer> queue = new ArrayDeque<>();
+        output[0] = -1;
+        for (int c = 1; c < alphabet; c++) {
+            int child = delta[c];
+            if (child != 0) queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            output[node] = pattern[node] >= 0 ? node : output[fail[node]];
+
+            for (int c = 1; c < alphabet; c++) {
+                int idx = node * alphabet + c;
+                int child = delta[idx];
+                int viaFail = delta[fail[node] * alphabet + c];
+                if (child != 0) {
+                    fail[child] = viaFail;
+                    queue.add(child);
+                } else {
+                    delta[idx] = viaFail;
+                }
+            }
+        }
+    }
+
+    int length(int pattern) {
+        return lengths[pattern];
+    }
+
+    void search(CharSequence text, Hits hits) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            node = delta[node * alphabet + classes[text.charAt(i)]];
+
+            for (int out = output[node]; out >= 0; out = output[fail[out]]) {
+                int p = pattern[out];
+                hits.hit(p, i - lengths[p] + 1);
+            }
+        }
+    }
+}
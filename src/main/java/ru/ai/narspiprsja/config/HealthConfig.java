@@ -0,0 +1,34 @@
+package ru.ai.narspiprsja.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.ai.narspiprsja.tools.BreakerTools;
+import ru.ai.narspiprsja.tools.OpenTools;
+
+@Configuration
+public class HealthConfig {
+
+    /**
+     * Входит в группу readiness (см. application.properties): пока модели OpenNLP грузятся
+     * в фоне, экземпляр не считается готовым к работе.
+     */
+    @Bean
+    public HealthIndicator openModels(OpenTools openTools) {
+        return () -> {
+            if (openTools.isReady()) return Health.up().build();
+            if (openTools.isFailed()) return Health.down().withDetail("models", "failed").build();
+            return Health.outOfService().withDetail("models", "loading").build();
+        };
+    }
+
+    /**
+     * Разомкнутые предохранители хостов (см. BreakerTools). Всегда UP: отключённый хост —
+     * забота парсера, а не повод выводить экземпляр из работы.
+     */
+    @Bean
+    public HealthIndicator hostBreakers(BreakerTools breakerTools) {
+        return () -> Health.up().withDetails(breakerTools.getTripped()).build();
+    }
+}
@@ -0,0 +1,235 @@
+package ru.ai.narspiprsja.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.amqp.support.postprocessor.AbstractCompressingPostProcessor;
+import org.springframework.amqp.support.postprocessor.AbstractDecompressingPostProcessor;
+import org.springframework.amqp.support.postprocessor.DeflaterPostProcessor;
+import org.springframework.amqp.support.postprocessor.DelegatingDecompressingPostProcessor;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Форматы и сжатие сообщений шлюза.
+ * Формат исходящих сообщений задаёт parse.config.message-format (json, smile, cbor),
+ * входящие разбираются по их content-type, так что JSON по умолчанию понимают обе стороны.
+ * Сжатие (parse.config.message-compression: none, gzip, deflate, lz4, zstd) пишется
+ * в content-encoding и снимается при получении.
+ */
+public final class MessageCodecs {
+    public static final String JSON = "application/json";
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String CBOR = "application/cbor";
+
+    private MessageCodecs() {
+    }
+
+    public static SmartMessageConverter converter(String format) {
+        AbstractJackson2MessageConverter json = new Jackson2JsonMessageConverter();
+        AbstractJackson2MessageConverter smile = new BinaryMessageConverter(mapper(SmileMapper.builder()), MimeType.valueOf(SMILE));
+        AbstractJackson2MessageConverter cbor = new BinaryMessageConverter(mapper(CBORMapper.builder()), MimeType.valueOf(CBOR));
+
+        AbstractJackson2MessageConverter outgoing = switch (format == null ? "json" : format.toLowerCase()) {
+            case "json" -> json;
+            case "smile" -> smile;
+            case "cbor" -> cbor;
+            default -> throw new IllegalArgumentException("Неизвестный формат сообщений: " + format);
+        };
+
+        return new FormatMessageConverter(outgoing, json, Map.of(JSON, json, SMILE, smile, CBOR, cbor));
+    }
+
+    /**
+     * @return null, если сжатие выключено
+     */
+    public static MessagePostProcessor compressor(String compression) {
+        return switch (compression == null ? "none" : compression.toLowerCase()) {
+            case "none" -> null;
+            case "gzip" -> new GZipPostProcessor();
+            case "deflate" -> new DeflaterPostProcessor();
+            case "lz4" -> new Lz4PostProcessor();
+            case "zstd" -> new ZstdPostProcessor();
+            default -> throw new IllegalArgumentException("Неизвестное сжатие сообщений: " + compression);
+        };
+    }
+
+    /**
+     * Снимает любое из поддерживаемых сжатий по content-encoding; несжатые сообщения проходят как есть.
+     */
+    public static DelegatingDecompressingPostProcessor decompressor() {
+        DelegatingDecompressingPostProcessor decompressor = new DelegatingDecompressingPostProcessor();
+        decompressor.addDecompressor("lz4", new Lz4DecompressingPostProcessor());
+        decompressor.addDecompressor("zstd", new ZstdDecompressingPostProcessor());
+        return decompressor;
+    }
+
+    // Те же настройки, что у JacksonUtils.enhancedObjectMapper для JSON
+    private static <M extends ObjectMapper, B extends MapperBuilder<M, B>> M mapper(B builder) {
+        return builder
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(MapperFeature.DEFAULT_VIEW_INCLUSION)
+                .addModule(new JavaTimeModule())
+                .build();
+    }
+
+    /**
+     * Пишет в формате outgoing, читает по content-type сообщения; неизвестный тип — как JSON.
+     * В отличие от ContentTypeDelegatingMessageConverter поддерживает convertSendAndReceiveAsType.
+     */
+    static final class FormatMessageConverter implements SmartMessageConverter {
+        private final SmartMessageConverter outgoing;
+        private final SmartMessageConverter fallback;
+        private final Map<String, SmartMessageConverter> delegates;
+
+        FormatMessageConverter(SmartMessageConverter outgoing, SmartMessageConverter fallback,
+                               Map<String, SmartMessageConverter> delegates) {
+            this.outgoing = outgoing;
+            this.fallback = fallback;
+            this.delegates = delegates;
+        }
+
+        @Override
+        public Message toMessage(Object object, MessageProperties messageProperties) {
+            return outgoing.toMessage(object, messageProperties);
+        }
+
+        @Override
+        public Message toMessage(Object object, MessageProperties messageProperties, Type genericType) {
+            return outgoing.toMessage(object, messageProperties, genericType);
+        }
+
+        @Override
+        public Object fromMessage(Message message) {
+            return incoming(message).fromMessage(message);
+        }
+
+        @Override
+        public Object fromMessage(Message message, Object conversionHint) {
+            return incoming(message).fromMessage(message, conversionHint);
+        }
+
+        private SmartMessageConverter incoming(Message message) {
+            String contentType = message.getMessageProperties().getContentType();
+            if (contentType == null) return fallback;
+
+            try {
+                MimeType mime = MimeType.valueOf(contentType);
+                return delegates.getOrDefault(mime.getType() + "/" + mime.getSubtype(), fallback);
+            } catch (InvalidMimeTypeException e) {
+                return fallback;
+            }
+        }
+    }
+
+    /**
+     * Jackson-конвертер для двоичных форматов: базовый класс читает тело как строку в кодировке,
+     * поэтому чтение переопределено на байты.
+     */
+    static final class BinaryMessageConverter extends AbstractJackson2MessageConverter {
+        BinaryMessageConverter(ObjectMapper mapper, MimeType contentType) {
+            super(mapper, contentType);
+        }
+
+        @Override
+        public Object fromMessage(Message message) {
+            return fromMessage(message, null);
+        }
+
+        @Override
+        public Object fromMessage(Message message, Object conversionHint) {
+            JavaType type = conversionHint instanceof ParameterizedTypeReference<?> reference
+                    ? objectMapper.constructType(reference.getType())
+                    : getJavaTypeMapper().toJavaType(message.getMessageProperties());
+
+            try {
+                return objectMapper.readValue(message.getBody(), type);
+            } catch (IOException e) {
+                throw new MessageConversionException("Failed to convert Message content", e);
+            }
+        }
+    }
+
+    static final class Lz4PostProcessor extends AbstractCompressingPostProcessor {
+        @Override
+        protected OutputStream getCompressorStream(OutputStream stream) throws IOException {
+            // Блок по умолчанию 4 МБ выделялся бы на каждое сообщение
+            return new LZ4FrameOutputStream(stream, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        protected String getEncoding() {
+            return "lz4";
+        }
+    }
+
+    static final class Lz4DecompressingPostProcessor extends AbstractDecompressingPostProcessor {
+        Lz4DecompressingPostProcessor() {
+            // Распаковывать всегда, а не только при заголовке springAutoDecompress
+            super(true);
+        }
+
+        @Override
+        protected InputStream getDecompressorStream(InputStream stream) throws IOException {
+            return new LZ4FrameInputStream(stream);
+        }
+
+        @Override
+        protected String getEncoding() {
+            return "lz4";
+        }
+    }
+
+    static final class ZstdPostProcessor extends AbstractCompressingPostProcessor {
+        @Override
+        protected OutputStream getCompressorStream(OutputStream stream) throws IOException {
+            return new ZstdOutputStream(stream);
+        }
+
+        @Override
+        protected String getEncoding() {
+            return "zstd";
+        }
+    }
+
+    static final class ZstdDecompressingPostProcessor extends AbstractDecompressingPostProcessor {
+        ZstdDecompressingPostProcessor() {
+            // Распаковывать всегда, а не только при заголовке springAutoDecompress
+            super(true);
+        }
+
+        @Override
+        protected InputStream getDecompressorStream(InputStream stream) throws IOException {
+            return new ZstdInputStream(stream);
+        }
+
+        @Override
+        protected String getEncoding() {
+            return "zstd";
+        }
+    }
+}
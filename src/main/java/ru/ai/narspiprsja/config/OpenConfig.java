@@ -1,6 +1,7 @@
 package ru.ai.narspiprsja.config;
 
 import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
@@ -8,12 +9,10 @@ import org.springframework.core.io.Resource;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.regex.MatchResult;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Configuration
 public class OpenConfig {
@@ -21,23 +20,22 @@ public class OpenConfig {
     @Value("${parse.abbreviations-file}")
     private Resource abbreviationsFile;
 
-    private final Set<String> abbrs = new HashSet<>();
+    // Модели OpenNLP грузятся в фоне, а готовность приложения ждёт их (см. OpenTools, HealthConfig)
+    @Getter
+    @Value("${parse.background-models:false}")
+    private boolean backgroundModels;
 
-    // Цепочка инициалов: "А. Б." или "А. Б. В."
-    private static final Pattern INITIALS_SEQUENCE =
-            Pattern.compile("\\b(?:[А-ЯЁ]\\.)(?:\\s*[А-ЯЁ]\\.){1,}");
+    private final Set<String> abbrs = new HashSet<>();
 
-    // Число с точкой (перечисления) — не трогать десятичные дроби
-    private static final Pattern NUMBER_DOT_PATTERN =
-            Pattern.compile("\\b(\\d+)\\.(?!\\d)");
+    // Автомат по сокращениям с точками; номер сокращения — его порядок в обходе abbrs
+    private AbbrAutomaton automaton;
 
-    // Одиночная буква (не инициалы)
-    private static final Pattern SINGLE_LETTER_ABBR =
-            Pattern.compile("\\b([А-ЯЁа-яё])\\.(?!\\s*[А-ЯЁа-яё]\\.)");
+    private static final String DOT = "<DOT>";
 
-    // 2–3 буквенные аббревиатуры
-    private static final Pattern TWO_OR_THREE_LETTER_ABBR =
-            Pattern.compile("\\b([А-ЯЁа-яё]{2,3})\\.");
+    // Состояние символа маскируемого текста
+    private static final byte KEEP = 0;
+    private static final byte MASK = 1;
+    private static final byte DROP = 2;
 
     @PostConstruct
     public void loadAbbreviations() {
@@ -51,74 +49,315 @@ public class OpenConfig {
         } catch (Exception e) {
             throw new RuntimeException("Не удалось загрузить список сокращений", e);
         }
-    }
 
-    // Утилита: безопасное replaceAll с функцией-генератором замены (Java 8+)
-    private String regexReplaceAll(String input, Pattern p, Function<MatchResult, String> replacer) {
-        Matcher m = p.matcher(input);
-        StringBuilder sb = new StringBuilder();
-        while (m.find()) {
-            MatchResult mr = m.toMatchResult();
-            String repl = replacer.apply(mr);
-            m.appendReplacement(sb, Matcher.quoteReplacement(repl));
-        }
-        m.appendTail(sb);
-        return sb.toString();
+        // Сокращения без точек маскировать нечего. Порядок важен при пересечениях:
+        // раньше заменённое сокращение «съедает» точки более позднего
+        List<String> dotted = abbrs.stream().filter(a -> a.indexOf('.') >= 0).toList();
+        automaton = new AbbrAutomaton(dotted);
     }
 
     /**
      * Маскируем сокращения, чтобы SentenceDetector не ломал предложения.
      * Цель: заменить точку в конструкциях, где точка — НЕ конец предложения,
      * на маркер "<DOT>" (и объединить инициалы в единый токен).
+     * <p>
+     * Правила применяются в прежнем порядке, но над массивом состояний символов:
+     * текст просматривается по одному разу на правило без регулярных выражений,
+     * а результат собирается один раз в конце.
      */
     public String mask(String text) {
-        String result = text;
+        if (text == null || text.isEmpty()) return text;
 
-        if (result == null || result.isEmpty()) return result;
+        int n = text.length();
+        byte[] state = new byte[n];
 
         // Сначала специальные конструкции, чтобы они не мешали (т.д., т.е., т.п.)
-        result = result.replaceAll("т\\.д\\.", "т<DOT>д<DOT>");
-        result = result.replaceAll("т\\.е\\.", "т<DOT>е<DOT>");
-        result = result.replaceAll("т\\.п\\.", "т<DOT>п<DOT>");
+        maskSpecial(text, state);
 
         // 1) Цепочки инициалов: "А. Б." / "А. Б. В." -> "А<DOT>Б<DOT>" / "А<DOT>Б<DOT>В<DOT>"
-        result = regexReplaceAll(result, INITIALS_SEQUENCE, mr -> mr.group().replaceAll("\\.\\s*", "<DOT>"));
+        maskInitials(text, state);
 
-        // 2) Нумерованные пункты: "1." "35." -> "1<DOT>" "35<DOT>" (не затрагиваем "15.5" — отрицательный lookahead)
-        result = regexReplaceAll(result, NUMBER_DOT_PATTERN, mr -> mr.group(1) + "<DOT>");
+        // 2) Нумерованные пункты: "1." "35." -> "1<DOT>" "35<DOT>" (не затрагиваем "15.5")
+        maskNumbers(text, state);
 
-        // 3) Словарные сокращения (из файла) — простой replace
-        for (String abbr : abbrs) {
-            if (abbr == null || abbr.isEmpty()) continue;
-            String mask = abbr.replace(".", "<DOT>");
-            // replace (не regex), чтобы не усложнять экранирование
-            result = result.replace(abbr, mask);
-        }
+        // 3) Словарные сокращения (из файла)
+        maskDictionary(text, state);
 
         // 4) Одиночные буквенные аббревиатуры (не инициалы)
-        result = regexReplaceAll(result, SINGLE_LETTER_ABBR, mr -> mr.group(1) + "<DOT>");
+        maskSingleLetters(text, state);
 
         // 5) Двух/трёхбуквенные аббревиатуры
-        result = regexReplaceAll(result, TWO_OR_THREE_LETTER_ABBR, mr -> mr.group(1) + "<DOT>");
+        maskShortAbbrs(text, state);
+
+        int masked = 0;
+        for (byte b : state) if (b == MASK) masked++;
+        if (masked == 0) return text;
+
+        StringBuilder sb = new StringBuilder(n + masked * (DOT.length() - 1));
+        for (int i = 0; i < n; i++) {
+            if (state[i] == KEEP) sb.append(text.charAt(i));
+            else if (state[i] == MASK) sb.append(DOT);
+        }
+        return sb.toString();
+    }
+
+    private void maskSpecial(String text, byte[] state) {
+        for (int i = 0; i + 3 < text.length(); i++) {
+            char c = text.charAt(i + 2);
+            if (text.charAt(i) == 'т' && text.charAt(i + 1) == '.'
+                    && (c == 'д' || c == 'е' || c == 'п') && text.charAt(i + 3) == '.') {
+                state[i + 1] = MASK;
+                state[i + 3] = MASK;
+                i += 3;
+            }
+        }
+    }
+
+    // Аналог \b(?:[А-ЯЁ]\.)(?:\s*[А-ЯЁ]\.){1,}
+    private void maskInitials(String text, byte[] state) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (!isUpper(text.charAt(i)) || !isDot(text, state, i + 1) || !isWordBefore(text, i)) {
+                i++;
+                continue;
+            }
+
+            int end = i + 2;
+            while (true) {
+                int k = end;
+                while (k < n && isSpace(text.charAt(k))) k++;
+                if (k < n && isUpper(text.charAt(k)) && isDot(text, state, k + 1)) {
+                    end = k + 2;
+                } else {
+                    break;
+                }
+            }
+
+            if (end == i + 2) {
+                i++;
+                continue;
+            }
+
+            for (int k = i + 1; k < end; k++) {
+                char c = text.charAt(k);
+                if (c == '.') state[k] = MASK;
+                else if (isSpace(c)) state[k] = DROP;
+            }
+            i = end;
+        }
+    }
+
+    // Аналог \b(\d+)\.(?!\d)
+    private void maskNumbers(String text, byte[] state) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (!isDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            int k = i;
+            while (k < n && isDigit(text.charAt(k))) k++;
+
+            if (!isWordBefore(text, i) && isDot(text, state, k)
+                    && !(k + 1 < n && isDigit(text.charAt(k + 1)))) {
+                state[k] = MASK;
+                k++;
+            }
+            i = k;
+        }
+    }
+
+    // Прежний String.replace по каждому сокращению в порядке обхода abbrs: вхождение заменяется,
+    // только если его точки ещё не заменены, а вхождения одного сокращения не перекрываются
+    private void maskDictionary(String text, byte[] state) {
+        if (automaton == null) return;
+
+        long[][] hits = {new long[16]};
+        int[] count = {0};
+        automaton.search(text, (pattern, start) -> {
+            if (count[0] == hits[0].length) hits[0] = Arrays.copyOf(hits[0], count[0] * 2);
+            hits[0][count[0]++] = ((long) pattern << 32) | start;
+        });
+        if (count[0] == 0) return;
+
+        long[] sorted = hits[0];
+        Arrays.sort(sorted, 0, count[0]);
+
+        int pattern = -1;
+        int lastEnd = 0;
+        for (int h = 0; h < count[0]; h++) {
+            int p = (int) (sorted[h] >>> 32);
+            int start = (int) sorted[h];
+            if (p != pattern) {
+                pattern = p;
+                lastEnd = 0;
+            }
+            if (start < lastEnd) continue;
+
+            int end = start + automaton.length(p);
+            boolean intact = true;
+            for (int k = start; k < end && intact; k++) {
+                intact = state[k] == KEEP;
+            }
+            if (!intact) continue;
+
+            for (int k = start; k < end; k++) {
+                if (text.charAt(k) == '.') state[k] = MASK;
+            }
+            lastEnd = end;
+        }
+    }
+
+    // Аналог \b([А-ЯЁа-яё])\.(?!\s*[А-ЯЁа-яё]\.); решения принимаются до изменений этого шага
+    private void maskSingleLetters(String text, byte[] state) {
+        int n = text.length();
+        int[] found = null;
+        int count = 0;
 
-        return result;
+        for (int i = 0; i + 1 < n; i++) {
+            if (!isLetter(text.charAt(i)) || !isDot(text, state, i + 1) || !isWordBefore(text, i)) continue;
+
+            int k = i + 2;
+            while (k < n && isSpace(text.charAt(k))) k++;
+            if (k < n && isLetter(text.charAt(k)) && isDot(text, state, k + 1)) continue;
+
+            if (found == null) found = new int[4];
+            else if (count == found.length) found = Arrays.copyOf(found, count * 2);
+            found[count++] = i + 1;
+            i++;
+        }
+
+        for (int f = 0; f < count; f++) state[found[f]] = MASK;
+    }
+
+    // Аналог \b([А-ЯЁа-яё]{2,3})\.
+    private void maskShortAbbrs(String text, byte[] state) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            if (!isLetter(text.charAt(i)) || !isWordBefore(text, i)) {
+                i++;
+                continue;
+            }
+
+            int run = 1;
+            while (run < 3 && i + run < n && isLetter(text.charAt(i + run))) run++;
+
+            if (run >= 2 && isDot(text, state, i + run)) {
+                state[i + run] = MASK;
+                i += run + 1;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isDot(String text, byte[] state, int i) {
+        return i < text.length() && text.charAt(i) == '.' && state[i] == KEEP;
+    }
+
+    private static boolean isUpper(char c) {
+        return (c >= 'А' && c <= 'Я') || c == 'Ё';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'А' && c <= 'я') || c == 'Ё' || c == 'ё';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // \s без флагов: [ \t\n\x0B\f\r]
+    private static boolean isSpace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Левая сторона \b из java.util.regex: слева от позиции стоит символ слова
+     * (ASCII-буква, цифра, '_') или непробельная диакритика, опирающаяся на букву.
+     * Правило написано под Java 21, где \b без UNICODE_CHARACTER_CLASS работает по ASCII.
+     */
+    private static boolean isWordBefore(String text, int i) {
+        if (i == 0) return false;
+
+        int cp = text.codePointBefore(i);
+        if (cp < 128) {
+            return (cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z') || (cp >= '0' && cp <= '9') || cp == '_';
+        }
+        if (Character.getType(cp) != Character.NON_SPACING_MARK) return false;
+
+        for (int x = i - 1; x >= 0; x--) {
+            int ch = text.codePointAt(x);
+            if (Character.isLetterOrDigit(ch)) return true;
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) return false;
+        }
+        return false;
     }
 
     /**
      * Восстановление точек обратно (и аккуратное восстановление пробелов между инициалами).
+     * "В.К." -> "В. К."; пары инициалов ищутся слева направо без перекрытий,
+     * как в однократном replaceAll по ([А-ЯЁ])\.\s*([А-ЯЁ])\. — повторный проход
+     * результат уже не меняет.
      */
     public String unmask(String text) {
         if (text == null) return null;
-        String res = text.replace("<DOT>", ".");
 
-        // Вставляем пробел между инициалами при необходимости: "В.К." -> "В. К."
-        // Делаем итеративно, пока находятся пары без пробела.
-        String prev;
-        do {
-            prev = res;
-            res = res.replaceAll("([А-ЯЁ])\\.\\s*([А-ЯЁ])\\.", "$1. $2.");
-        } while (!res.equals(prev));
+        StringBuilder sb = new StringBuilder(text.length());
+        unmask(text, 0, text.length(), sb);
+        return sb.toString();
+    }
+
+    /**
+     * То же, что unmask(String), для диапазона [start, end) text с дописыванием результата в out:
+     * detectSentences собирает все предложения в одном буфере без промежуточных строк.
+     */
+    public void unmask(CharSequence text, int start, int end, StringBuilder out) {
+        int from = out.length();
+
+        int copied = start;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '<' && isDotMarker(text, i, end)) {
+                out.append(text, copied, i).append('.');
+                i += DOT.length() - 1;
+                copied = i + 1;
+            }
+        }
+        out.append(text, copied, end);
+
+        // Инициалы правятся прямо в out: правка затрагивает только уже пройденные символы
+        int n = out.length();
+        int i = from;
+        while (i + 1 < n) {
+            if (!isUpper(out.charAt(i)) || out.charAt(i + 1) != '.') {
+                i++;
+                continue;
+            }
 
-        return res;
+            int k = i + 2;
+            while (k < n && isSpace(out.charAt(k))) k++;
+            if (k + 1 < n && isUpper(out.charAt(k)) && out.charAt(k + 1) == '.') {
+                if (k != i + 3 || out.charAt(i + 2) != ' ') {
+                    out.replace(i + 2, k, " ");
+                    n = out.length();
+                    k = i + 3;
+                }
+                i = k + 2;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isDotMarker(CharSequence text, int i, int end) {
+        if (i + DOT.length() > end) return false;
+        for (int j = 0; j < DOT.length(); j++) {
+            if (text.charAt(i + j) != DOT.charAt(j)) return false;
+        }
+        return true;
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ public class ParserConfig {
 
     public static final String REFERRER = "https://www.google.com";
     public static final String ACCEPT_LANGUAGE = "ru-RU,ru;q=0.9,en-US;q=0.8,en;q=0.7";
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
     public static final int TIMEOUT_MS = 10_000;
-    public static final int SLEEP_MS = 100;
+    public static final int THROTTLE_ATTEMPTS = 2;
 }
@@ -2,14 +2,23 @@ package ru.ai.narspiprsja.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.ShutdownSignalException;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.AsyncRabbitTemplate;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.AbstractConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.ConditionalExceptionLogger;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import ru.ai.narspiprsja.property.ParserProperty;
 
 @Getter
 @Configuration
@@ -23,6 +32,16 @@ public class RabbitConfig {
     private final String urlsReqRoutingKey = "prs.urls.request.routing.key";
     private final String pageReqRoutingKey = "prs.page.request.routing.key";
 
+    // Очередь задач на загрузку статей между экземплярами парсера и префикс очередей-lease частей
+    private final String siteTaskQueue = "prs.site.task.queue";
+    private final String prsExc = "prs.exchange";
+    private final String siteTaskRoutingKey = "prs.site.task.routing.key";
+    private final String leaseQueuePrefix = "prs.lease.";
+
+    // Задачи, отклонённые воркером, складываются сюда для разбора, а не теряются
+    private final String siteTaskDlq = "prs.site.task.dlq";
+    private final String prsDlx = "prs.dlx";
+
     @Bean
     public Queue urlsRequestQueue() {
         return QueueBuilder.durable(urlsReqQueue).build();
@@ -52,18 +71,122 @@ public class RabbitConfig {
                 .with(pageReqRoutingKey);
     }
 
+    @Bean
+    public Queue siteTaskQueue() {
+        return QueueBuilder.durable(siteTaskQueue)
+                .deadLetterExchange(prsDlx)
+                .build();
+    }
+
+    @Bean
+    public Queue siteTaskDeadLetterQueue() {
+        return QueueBuilder.durable(siteTaskDlq).build();
+    }
+
+    @Bean
+    public DirectExchange prsDeadLetterExchange() {
+        return new DirectExchange(prsDlx);
+    }
+
+    @Bean
+    public Binding siteTaskDeadLetterBinding(Queue siteTaskDeadLetterQueue, DirectExchange prsDeadLetterExchange) {
+        // Отклонённое сообщение уходит в DLX со своим исходным ключом
+        return BindingBuilder.bind(siteTaskDeadLetterQueue)
+                .to(prsDeadLetterExchange)
+                .with(siteTaskRoutingKey);
+    }
+
+    @Bean
+    public DirectExchange prsExchange() {
+        return new DirectExchange(prsExc);
+    }
+
+    @Bean
+    public Binding siteTaskBinding(Queue siteTaskQueue, DirectExchange prsExchange) {
+        return BindingBuilder.bind(siteTaskQueue)
+                .to(prsExchange)
+                .with(siteTaskRoutingKey);
+    }
+
+    /**
+     * Потребители очереди задач: стартуют только на экземплярах с parse.config.worker=true.
+     * Подтверждение ручное: WorkTools подтверждает задачу после publisher confirm статьи.
+     * Задача, которую не удалось разобрать, не возвращается в очередь, чтобы не крутиться по кругу,
+     * а уходит через prs.dlx в prs.site.task.dlq.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory siteListenerFactory(ConnectionFactory connectionFactory,
+                                                                    MessageConverter messageConverter,
+                                                                    ParserProperty parserProperty) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setAfterReceivePostProcessors(MessageCodecs.decompressor());
+        factory.setConcurrentConsumers(Math.max(1, parserProperty.getWorkerConcurrency()));
+        factory.setPrefetchCount(Math.max(1, parserProperty.getWorkerPrefetch()));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setDefaultRequeueRejected(false);
+        factory.setAutoStartup(parserProperty.isWorker());
+        return factory;
+    }
+
+    /**
+     * Донастройка CachingConnectionFactory из автоконфигурации Boot: занятый lease части (см. LeaseTools) —
+     * штатная ситуация, а не ошибка канала, поэтому такие закрытия каналов пишутся в debug.
+     */
+    @Bean
+    public static BeanPostProcessor connectionFactoryCustomizer() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof CachingConnectionFactory caching) {
+                    caching.setCloseExceptionLogger(leaseAwareCloseLogger());
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static ConditionalExceptionLogger leaseAwareCloseLogger() {
+        AbstractConnectionFactory.DefaultChannelCloseLogger closeLogger =
+                new AbstractConnectionFactory.DefaultChannelCloseLogger();
+        return (log, message, cause) -> {
+            if (cause instanceof ShutdownSignalException signal
+                    && signal.getReason() instanceof AMQP.Channel.Close close
+                    && close.getReplyCode() == AMQP.RESOURCE_LOCKED) {
+                log.debug(message + ": " + cause);
+                return;
+            }
+            closeLogger.log(log, message, cause);
+        };
+    }
+
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
-                                         Jackson2JsonMessageConverter messageConverter) {
+                                         MessageConverter messageConverter,
+                                         ParserProperty parserProperty) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(messageConverter);
+
+        MessagePostProcessor compressor = MessageCodecs.compressor(parserProperty.getMessageCompression());
+        if (compressor != null) {
+            template.setBeforePublishPostProcessors(compressor);
+        }
+        template.setAfterReceivePostProcessors(MessageCodecs.decompressor());
         template.setReplyTimeout(5000);
         return template;
     }
 
     @Bean
-    public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public AsyncRabbitTemplate asyncRabbitTemplate(RabbitTemplate rabbitTemplate) {
+        AsyncRabbitTemplate template = new AsyncRabbitTemplate(rabbitTemplate);
+        template.setReceiveTimeout(5000);
+        return template;
+    }
+
+    @Bean
+    public MessageConverter messageConverter(ParserProperty parserProperty) {
+        return MessageCodecs.converter(parserProperty.getMessageFormat());
     }
 
     @Bean
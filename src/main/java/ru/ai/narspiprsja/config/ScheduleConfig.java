@@ -0,0 +1,33 @@
+package ru.ai.narspiprsja.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import ru.ai.narspiprsja.property.ParserProperty;
+import ru.ai.narspiprsja.tools.RabbitTools;
+
+import java.time.Duration;
+
+@Configuration
+@RequiredArgsConstructor
+public class ScheduleConfig implements SchedulingConfigurer {
+    private final ParserProperty parserProperty;
+
+    private final RabbitTools rabbitTools;
+
+    /**
+     * В параллельном режиме каждая часть — отдельная задача со своим периодом.
+     * Задача только ставит обход в очередь, поэтому поток планировщика не блокируется.
+     */
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        if (!parserProperty.isParallel() || !parserProperty.isCrawler() || parserProperty.getParts() == null) return;
+
+        for (String part : parserProperty.getParts()) {
+            registrar.addFixedRateTask(
+                    () -> rabbitTools.submitPart(part),
+                    Duration.ofMillis(parserProperty.getPartDelayMs(part)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.ai.narspiprsja.model;
+
+/**
+ * Запись архива страниц: исходный HTML статьи как он пришёл с сайта.
+ */
+public record Archived(
+        long postId,
+        String url,
+        String charset,
+        long fetchedAt,
+        byte[] body
+) {
+}
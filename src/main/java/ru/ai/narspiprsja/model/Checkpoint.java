@@ -0,0 +1,16 @@
+package ru.ai.narspiprsja.model;
+
+/**
+ * Прогресс участка догрузки: страница, с которой продолжать, первая новость участка (head),
+ * самая старая обработанная новость (cursor), признаки, что участок пройден и что на нём кончилась лента.
+ * Номера страниц сдвигаются, когда на сайте появляются новости, поэтому границами служат head и cursor,
+ * а страница — только подсказка, откуда начать поиск.
+ */
+public record Checkpoint(
+        int page,
+        Url head,
+        Url cursor,
+        boolean done,
+        boolean end
+) {
+}
@@ -0,0 +1,46 @@
+package ru.ai.narspiprsja.model;
+
+import java.util.Map;
+
+/**
+ * Ответ сервера: итоговый адрес после редиректов, код, заголовки (без учёта регистра имён)
+ * и уже распакованное тело.
+ */
+public record Fetched(
+        String url,
+        int status,
+        Map<String, String> headers,
+        byte[] body
+) {
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    public String contentType() {
+        return headers.get("Content-Type");
+    }
+
+    public String charset() {
+        String type = contentType();
+        if (type == null) return null;
+
+        for (String param : type.split(";")) {
+            String p = param.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                return p.substring(8).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * То же правило, что у Jsoup: разбирается только text/* и XML, а ответ без Content-Type — как разметка.
+     */
+    public boolean isMarkup() {
+        String type = contentType();
+        if (type == null) return true;
+
+        String mime = type.split(";", 2)[0].trim().toLowerCase();
+        return mime.startsWith("text/") || mime.endsWith("/xml") || mime.endsWith("+xml");
+    }
+}
@@ -0,0 +1,13 @@
+package ru.ai.narspiprsja.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+public record Mark(
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+        LocalDateTime date,
+        Set<String> links
+) {
+}
@@ -1,8 +1,10 @@
 package ru.ai.narspiprsja.model;
 
+import java.util.List;
+
 public record Page(
         long postId,
         String url,
-        String text
+        List<String> chunks
 ) {
 }
@@ -0,0 +1,21 @@
+package ru.ai.narspiprsja.model;
+
+/**
+ * Участок обхода ленты части при догрузке истории: страницы с first по last включительно.
+ */
+public record Shard(
+        String part,
+        int first,
+        int last
+) {
+    public String key() {
+        return part + "/" + first;
+    }
+
+    /**
+     * Следующий участок той же ленты.
+     */
+    public Shard next() {
+        return new Shard(part, last + 1, last + last - first + 1);
+    }
+}
@@ -3,8 +3,11 @@ package ru.ai.narspiprsja.property;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import ru.ai.narspiprsja.config.ParserConfig;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Component
@@ -13,7 +16,127 @@ public class ParserProperty {
     private String date;
     private List<String> parts;
 
-    private String splitter;
+    // Шаблон адреса ленты новостей части (%s — поддомен)
+    private String baseUrl = ParserConfig.BASE_URL;
+
+    // Размер чанка и перекрытие соседних чанков в токенах
     private int maxTokens;
     private int overlapTokens;
+
+    // Обрывок предложения короче стольких символов приклеивается к предыдущему (0 — не склеивать)
+    private int minSentenceChars = 20;
+
+    // Способ загрузки страниц: http (общий HttpClient) или jsoup (Jsoup.connect на каждый запрос)
+    private String fetcher = "http";
+    private int connectTimeoutMs = 5_000;
+    private int readTimeoutMs = ParserConfig.TIMEOUT_MS;
+
+    // Сколько страниц одного хоста загружается одновременно
+    private int hostConcurrency = 4;
+
+    // Скорость запросов к одному хосту (запр/с): старт, границы, шаги AIMD, запас токенов, время ответа,
+    // после которого скорость снижается, и потолок паузы по Retry-After. Ленты и статьи идут с одного хоста
+    // через один bucket, поэтому старт выше, чем нужно ленте: пока хост отвечает быстро, статьи сдерживает
+    // hostConcurrency, а bucket включается, только когда хост начинает тормозить или отвечать 429/5xx
+    private double rateInitial = 8.0;
+    private double rateMin = 0.2;
+    private double rateMax = 20.0;
+    private double rateIncrease = 0.5;
+    private double rateDecrease = 0.5;
+    private double rateBurst = 8.0;
+    private long rateLatencyMs = 3_000;
+    private long rateRetryAfterMaxMs = ParserConfig.TIMEOUT_MS;
+
+    // Предохранитель хоста: ошибок подряд до размыкания (0 — выключен) и сколько хост разомкнут
+    private int breakerFailures = 5;
+    private long breakerOpenMs = 30_000;
+
+    // Дублирующий запрос, если ответа нет дольше этого перцентиля времени ответа хоста (0 — выключено):
+    // окно последних ответов, сколько ответов нужно до первого дубля и нижняя граница ожидания
+    private double hedgePercentile = 0.95;
+    private int hedgeWindow = 200;
+    private int hedgeMinSamples = 20;
+    private long hedgeMinDelayMs = 100;
+
+    // Файл с отметками последних отправленных новостей по частям
+    private String markFile = "data/marks.json";
+
+    // Сколько страниц ленты загружается наперёд, не больше (1 — по одной); окно растёт с одной страницы,
+    // пока страницы новые целиком, лишние загрузки отменяются после последней
+    private int listingPrefetch = 1;
+
+    // Сколько ссылок помнят ETag/Last-Modified для условных запросов
+    private int conditionalCapacity = 2_000;
+
+    // Кэш уже отправленных статей: размер (0 — выключен), время жизни записи и файл-индекс
+    private int dedupCapacity = 10_000;
+    private long dedupTtlMs = 86_400_000;
+    private String dedupFile = "";
+
+    // Повторы запроса ссылок к шлюзу при таймауте ответа
+    private int gatewayAttempts = 3;
+    private long gatewayBackoffMs = 1_000;
+
+    // Формат исходящих сообщений (json, smile, cbor) и их сжатие (none, gzip, deflate, lz4, zstd)
+    private String messageFormat = "json";
+    private String messageCompression = "none";
+
+    // Отправка статей: объём пачки в байтах JSON, сколько ждёт неполная пачка, окно неподтверждённых
+    // пачек, ожидание confirm, повторы и файл для неотправленных пачек (пусто — без буфера)
+    private long publishMaxBytes = 512 * 1024;
+    private long publishLingerMs = 1_000;
+    private int publishWindow = 8;
+    private long publishConfirmTimeoutMs = 10_000;
+    private int publishAttempts = 3;
+    private long publishBackoffMs = 1_000;
+    private String publishSpillFile = "data/spill.jsonl";
+    private long publishReplayMs = 60_000;
+
+    // Этапы обработки статей (см. PipelineTools): одновременных загрузок, потоков NLP
+    // (0 — по числу ядер) и ёмкость очередей перед NLP и перед отправкой
+    private int fetchConcurrency = 64;
+    private int nlpThreads = 0;
+    private int nlpQueueCapacity = 32;
+    private int publishQueueCapacity = 64;
+
+    // Распределение работы между экземплярами: crawler — обходить ленты, dispatch — куда уходят статьи
+    // из ответа шлюза (local — грузятся здесь же, queue — задачами в prs.site.task.queue),
+    // worker — забирать задачи из очереди с workerConcurrency потребителями и workerPrefetch на каждого
+    private boolean crawler = true;
+    private String dispatch = "local";
+    private boolean worker;
+    private int workerConcurrency = 4;
+    private int workerPrefetch = 10;
+
+    // Параллельный обход частей: у каждой части своё расписание
+    private boolean parallel;
+    private long partDelayMs = 10_000;
+    private Map<String, Long> partDelays = Map.of();
+    private int partConcurrency = 4;
+
+    // Догрузка истории (см. BackfillTools): диапазон дат (to не включая, пусто — по сегодня), страниц ленты
+    // в участке, участков одновременно, запросов одновременно (меньше hostConcurrency, чтобы часть разрешений
+    // хоста оставалась живому обходу), формат date_start и файл с прогрессом участков
+    private LocalDate backfillFrom;
+    private LocalDate backfillTo;
+    private int backfillShardPages = 20;
+    private int backfillShards = 4;
+    private int backfillConcurrency = 2;
+    private String backfillDateFormat = "dd.MM.yyyy";
+    private String backfillFile = "data/backfill.json";
+
+    // Архив исходного HTML статей (пусто — выключен) и размер сегмента до сжатия; replay — при старте
+    // заново разобрать архив и отправить статьи, в replayThreads потоков (0 — по числу ядер)
+    private String archiveDir = "";
+    private long archiveSegmentBytes = 32L * 1024 * 1024;
+    private boolean replay;
+    private int replayThreads = 0;
+
+    public boolean isQueueDispatch() {
+        return "queue".equalsIgnoreCase(dispatch);
+    }
+
+    public long getPartDelayMs(String part) {
+        return partDelays.getOrDefault(part, partDelayMs);
+    }
 }
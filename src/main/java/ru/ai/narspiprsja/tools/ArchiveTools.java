@@ -0,0 +1,164 @@
+package ru.ai.narspiprsja.tools;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.model.Archived;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Архив исходного HTML статей в archiveDir: только дозапись, сегменты по archiveSegmentBytes
+ * (до сжатия), каждый сегмент — один поток zstd из записей Archived.
+ * После каждой записи поток сбрасывается, так что при падении теряется не больше последней записи;
+ * оборванный хвост сегмента при чтении пропускается. Пустой archiveDir — архив выключен.
+ */
+@Service
+@RequiredArgsConstructor
+public class ArchiveTools {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".zst";
+
+    private final ParserProperty parserProperty;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private DataOutputStream out;
+    private long segmentBytes;
+    private final AtomicInteger segmentSeq = new AtomicInteger();
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveTools.class);
+
+    public boolean isEnabled() {
+        String dir = parserProperty.getArchiveDir();
+        return dir != null && !dir.isBlank();
+    }
+
+    public void append(long postId, Fetched res) {
+        if (!isEnabled()) return;
+
+        writeLock.lock();
+        try {
+            if (out == null || segmentBytes >= parserProperty.getArchiveSegmentBytes()) roll();
+
+            out.writeLong(postId);
+            out.writeUTF(res.url());
+            out.writeUTF(res.charset() == null ? "" : res.charset());
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(res.body().length);
+            out.write(res.body());
+            out.flush();
+
+            segmentBytes += res.body().length + res.url().length();
+        } catch (IOException e) {
+            logger.warn("Не удалось записать страницу в архив: {}, {}", res.url(), e.getMessage());
+            closeSegment();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Каждый запуск пишет в новые сегменты: дописать в чужой поток zstd нельзя
+    private void roll() throws IOException {
+        closeSegment();
+
+        Path dir = Path.of(parserProperty.getArchiveDir());
+        Files.createDirectories(dir);
+
+        Path file = dir.resolve("%s%013d-%04d%s".formatted(
+                SEGMENT_PREFIX, System.currentTimeMillis(), segmentSeq.incrementAndGet(), SEGMENT_SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(new ZstdOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE_NEW))));
+        segmentBytes = 0;
+        logger.info("Archive segment {}", file);
+    }
+
+    private void closeSegment() {
+        if (out == null) return;
+
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть сегмент архива: {}", e.getMessage());
+        }
+        out = null;
+    }
+
+    /**
+     * Сегменты архива в порядке записи.
+     */
+    public List<Path> segments() throws IOException {
+        Path dir = Path.of(parserProperty.getArchiveDir());
+        if (!Files.isDirectory(dir)) return List.of();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Все записи сегмента по порядку; читать можно и сегмент, в который ещё идёт запись.
+     */
+    public static void read(Path segment, Consumer<Archived> action) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new ZstdInputStream(Files.newInputStream(segment)).setContinuous(true)))) {
+            while (true) {
+                long postId;
+                try {
+                    postId = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                Archived entry;
+                try {
+                    String url = in.readUTF();
+                    String charset = in.readUTF();
+                    long fetchedAt = in.readLong();
+                    int length = in.readInt();
+                    byte[] body = in.readNBytes(length);
+                    if (body.length < length) throw new EOFException();
+
+                    entry = new Archived(postId, url, charset.isEmpty() ? null : charset, fetchedAt, body);
+                } catch (EOFException e) {
+                    logger.warn("Оборванная запись в конце сегмента {}", segment);
+                    return;
+                }
+
+                action.accept(entry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeLock.lock();
+        try {
+            closeSegment();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
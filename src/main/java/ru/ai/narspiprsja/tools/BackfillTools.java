@@ -0,0 +1,356 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.body.UrlsRes;
+import ru.ai.narspiprsja.model.Checkpoint;
+import ru.ai.narspiprsja.model.Shard;
+import ru.ai.narspiprsja.model.Site;
+import ru.ai.narspiprsja.model.Url;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Догрузка истории лент отдельно от живого обхода (task() и ScheduleConfig).
+ * Лента сайта идёт от новых к старым и умеет только нижнюю границу date_start, поэтому каждая часть
+ * обходится одной лентой с date_start = backfillFrom, а параллельность даёт нарезка этой ленты на участки
+ * по backfillShardPages страниц. Новости позже backfillTo пропускаются, обход кончается на пустой странице.
+ * Номера страниц сдвигаются, пока идёт догрузка, поэтому прогресс участка в backfillFile хранится как
+ * его первая новость (head) и самая старая обработанная (cursor): перезапуск пропускает всё не старше cursor,
+ * а участок не заканчивается, пока не дойдёт до head следующего — так сдвиг не теряет новости на стыке.
+ * Страница, которая не загрузилась или не дошла до шлюза, останавливает участок — его продолжит следующий запуск.
+ * Отметки MarkTools не двигаются: живой обход по-прежнему останавливается на последней свежей новости.
+ */
+@Service
+@RequiredArgsConstructor
+public class BackfillTools {
+    private final ParserProperty parserProperty;
+
+    private final ParserTools parserTools;
+    private final RabbitTools rabbitTools;
+    private final PipelineTools pipelineTools;
+    private final WorkTools workTools;
+    private final PublishTools publishTools;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+
+    // Ссылки, уже принятые шлюзом в этом прогоне: на стыке участков новость видна из обоих
+    private final Set<String> sent = ConcurrentHashMap.newKeySet();
+
+    // Первая пустая страница ленты каждой части: дальше участки не запускаются
+    private final Map<String, Integer> ends = new ConcurrentHashMap<>();
+
+    private final ExecutorService backfillExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore shardLimit;
+    private Semaphore requestLimit;
+
+    private static final Logger logger = LoggerFactory.getLogger(BackfillTools.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (parserProperty.getBackfillFrom() == null || parserProperty.getParts() == null) return;
+
+        backfillExecutor.execute(this::run);
+    }
+
+    public void run() {
+        shardLimit = new Semaphore(Math.max(1, parserProperty.getBackfillShards()));
+        requestLimit = new Semaphore(Math.max(1, parserProperty.getBackfillConcurrency()));
+        load();
+
+        LocalDate to = to();
+        logger.info("Backfill {}..{}: {} parts", parserProperty.getBackfillFrom(), to, parserProperty.getParts().size());
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (String part : parserProperty.getParts()) {
+            futures.add(backfillExecutor.submit(() -> runPart(part)));
+        }
+
+        if (!await(futures)) return;
+
+        publishTools.flush();
+        logger.info("Backfill finished, urls sent: {}", sent.size());
+    }
+
+    private LocalDate to() {
+        return parserProperty.getBackfillTo() != null
+                ? parserProperty.getBackfillTo()
+                : LocalDate.now().plusDays(1);
+    }
+
+    /**
+     * Участки части запускаются по порядку, не больше backfillShards одновременно на все части,
+     * пока какой-нибудь участок не найдёт конец ленты.
+     */
+    private void runPart(String part) {
+        int pages = Math.max(1, parserProperty.getBackfillShardPages());
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (Shard shard = new Shard(part, 1, pages); shard.first() < end(part); shard = shard.next()) {
+                Checkpoint checkpoint = checkpoint(shard);
+                if (checkpoint.end()) break;
+                if (checkpoint.done()) continue;
+
+                shardLimit.acquire();
+                if (shard.first() >= end(part)) {
+                    shardLimit.release();
+                    break;
+                }
+
+                Shard current = shard;
+                futures.add(backfillExecutor.submit(() -> {
+                    try {
+                        runShard(current);
+                    } finally {
+                        shardLimit.release();
+                    }
+                }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        await(futures);
+    }
+
+    private boolean await(List<Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    logger.error("Backfill shard exception: {}", e.getCause().getMessage());
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private int end(String part) {
+        return ends.getOrDefault(part, Integer.MAX_VALUE);
+    }
+
+    private void runShard(Shard shard) {
+        String dateStart = parserProperty.getBackfillFrom()
+                .format(DateTimeFormatter.ofPattern(parserProperty.getBackfillDateFormat()));
+        LocalDate to = to();
+
+        Checkpoint checkpoint = checkpoint(shard);
+        Url head = checkpoint.head();
+        Url cursor = checkpoint.cursor();
+        boolean end = false;
+
+        try {
+            for (int page = Math.max(shard.first(), checkpoint.page()); ; page++) {
+                int current = page;
+                Optional<List<Url>> fetched = limited(() -> parserTools.fetchNewsPage(shard.part(), dateStart, current));
+                if (fetched.isEmpty()) {
+                    logger.warn("[{}] Backfill shard stopped at page {}, will resume from it", shard.key(), page);
+                    return;
+                }
+
+                List<Url> links = fetched.get();
+                if (links.isEmpty()) {
+                    ends.merge(shard.part(), page, Math::min);
+                    end = true;
+                    break;
+                }
+                if (head == null) head = links.getFirst();
+
+                Url last = cursor;
+                List<Url> urls = links.stream()
+                        .filter(url -> !passed(url, last))
+                        .filter(url -> within(url.date(), parserProperty.getBackfillFrom(), to))
+                        .filter(url -> sent.add(url.link()))
+                        .toList();
+
+                if (!send(shard.part(), urls)) {
+                    urls.forEach(url -> sent.remove(url.link()));
+                    logger.warn("[{}] Backfill shard stopped at page {}, will resume from it", shard.key(), page);
+                    return;
+                }
+
+                if (!passed(links.getLast(), cursor)) cursor = links.getLast();
+                save(shard, new Checkpoint(page + 1, head, cursor, false, false));
+                meterRegistry.counter("parser.backfill.pages", "part", shard.part()).increment();
+                meterRegistry.counter("parser.backfill.urls", "part", shard.part()).increment(urls.size());
+
+                // Сайт не учёл date_start: дальше только новости раньше диапазона
+                if (links.stream().allMatch(url -> url.date() != null
+                        && url.date().toLocalDate().isBefore(parserProperty.getBackfillFrom()))) {
+                    ends.merge(shard.part(), page + 1, Math::min);
+                    end = true;
+                    break;
+                }
+
+                if (page >= shard.last() && reached(links, checkpoint(shard.next()).head())) break;
+            }
+
+            save(shard, new Checkpoint(shard.first(), head, cursor, true, end));
+            logger.info("[{}] Backfill shard done", shard.key());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Новость уже обработана участком: она не старше cursor. Новости с той же датой, что и cursor,
+     * повторяются — лишняя отправка безопаснее пропуска, повтор отсеет DedupTools.
+     */
+    static boolean passed(Url url, Url cursor) {
+        if (cursor == null) return false;
+        if (url.link().equals(cursor.link())) return true;
+        return url.date() != null && cursor.date() != null && url.date().isAfter(cursor.date());
+    }
+
+    /**
+     * Участок дошёл до начала следующего; следующий ещё не начат — тогда его head появится уже после
+     * этой страницы, и сдвинутые новости он увидит сам.
+     */
+    static boolean reached(List<Url> links, Url next) {
+        if (next == null) return true;
+
+        return links.stream().anyMatch(url -> url.link().equals(next.link())
+                || url.date() != null && next.date() != null && url.date().isBefore(next.date()));
+    }
+
+    static boolean within(LocalDateTime date, LocalDate from, LocalDate to) {
+        if (date == null) return false;
+
+        LocalDate day = date.toLocalDate();
+        return !day.isBefore(from) && day.isBefore(to);
+    }
+
+    private interface Request<T> {
+        T call() throws InterruptedException;
+    }
+
+    // Не больше backfillConcurrency запросов догрузки к сайтам одновременно
+    private <T> T limited(Request<T> request) throws InterruptedException {
+        requestLimit.acquire();
+        try {
+            return request.call();
+        } finally {
+            requestLimit.release();
+        }
+    }
+
+    /**
+     * Ссылки страницы уходят шлюзу, принятые статьи грузятся через PipelineTools (или задачами воркерам
+     * при dispatch=queue). Возвращает управление, когда статьи страницы переданы на отправку.
+     *
+     * @return false, если шлюз не ответил — страница не считается обработанной
+     */
+    private boolean send(String part, List<Url> urls) throws InterruptedException {
+        if (urls.isEmpty()) return true;
+
+        UrlsReq req = new UrlsReq(UUID.randomUUID(), part, urls);
+        Optional<UrlsRes> res = rabbitTools.urlsSendAndReceive(req).join();
+        if (res.isEmpty()) return false;
+
+        List<Site> sites = res.get().sites();
+        if (parserProperty.isQueueDispatch()) {
+            int sent = workTools.dispatch(req, sites);
+            sites = sites.subList(sent, sites.size());
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Site site : sites) {
+            requestLimit.acquire();
+            PipelineTools.Progress progress;
+            try {
+                progress = pipelineTools.submit(site.postId(), site.source());
+            } catch (InterruptedException | RuntimeException e) {
+                requestLimit.release();
+                throw e;
+            }
+            progress.handed().whenComplete((v, e) -> requestLimit.release());
+            futures.add(progress.handed());
+        }
+
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                logger.error("[UUID: {}] Article parse exception: {}", req.uuid(), e.getCause().getMessage());
+            } catch (CancellationException e) {
+                logger.error("[UUID: {}] Article parse cancelled", req.uuid());
+            }
+        }
+        return true;
+    }
+
+    private synchronized Checkpoint checkpoint(Shard shard) {
+        return checkpoints.getOrDefault(shard.key(), new Checkpoint(shard.first(), null, null, false, false));
+    }
+
+    private synchronized void load() {
+        Path file = Path.of(parserProperty.getBackfillFile());
+        if (!Files.exists(file)) return;
+
+        try {
+            checkpoints.putAll(objectMapper.readValue(file.toFile(), new TypeReference<Map<String, Checkpoint>>() {}));
+            logger.info("Loaded backfill checkpoints for {} shards from {}", checkpoints.size(), file);
+        } catch (IOException e) {
+            logger.warn("Не удалось прочитать прогресс догрузки из {}: {}", file, e.getMessage());
+        }
+    }
+
+    private synchronized void save(Shard shard, Checkpoint checkpoint) {
+        checkpoints.put(shard.key(), checkpoint);
+
+        Path file = Path.of(parserProperty.getBackfillFile());
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(tmp.toFile(), checkpoints);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить прогресс догрузки в {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+}
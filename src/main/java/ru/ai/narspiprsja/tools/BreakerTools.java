@@ -0,0 +1,169 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Предохранитель на хост: после breakerFailures неудач подряд (5xx, таймаут, обрыв соединения)
+ * хост размыкается на breakerOpenMs, и запросы к нему сразу отклоняются, не занимая ни лимит хоста,
+ * ни токены RateTools. Затем пропускается один пробный запрос: успех замыкает хост, неудача
+ * размыкает снова. 429 неудачей не считается — это забота RateTools.
+ * Состояние по хостам — метрика parser.breaker.state (0 — замкнут, 1 — проба, 2 — разомкнут).
+ */
+@Service
+@RequiredArgsConstructor
+public class BreakerTools {
+    private final ParserProperty parserProperty;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(BreakerTools.class);
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final class Breaker {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String host;
+
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private long probeStarted;
+
+        Breaker(String host) {
+            this.host = host;
+            Gauge.builder("parser.breaker.state", this, b -> b.state().ordinal())
+                    .description("Предохранитель хоста: 0 — замкнут, 1 — проба, 2 — разомкнут")
+                    .tag("host", host)
+                    .register(meterRegistry);
+        }
+
+        boolean allow() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                long openNanos = TimeUnit.MILLISECONDS.toNanos(parserProperty.getBreakerOpenMs());
+
+                switch (state) {
+                    case CLOSED -> {
+                        return true;
+                    }
+                    case OPEN -> {
+                        if (now - openedAt < openNanos) return false;
+                        state = State.HALF_OPEN;
+                        probeStarted = now;
+                        logger.info("Пробный запрос к хосту {}", host);
+                        return true;
+                    }
+                    default -> {
+                        // Проба могла не дойти до запроса (прерывание), тогда через openNanos пускается новая
+                        if (now - probeStarted < openNanos) return false;
+                        probeStarted = now;
+                        return true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onSuccess() {
+            lock.lock();
+            try {
+                if (state != State.CLOSED) logger.info("Хост {} снова отвечает", host);
+                state = State.CLOSED;
+                failures = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void onFailure() {
+            lock.lock();
+            try {
+                failures++;
+                if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= parserProperty.getBreakerFailures())) {
+                    if (state == State.CLOSED) {
+                        logger.warn("Хост {} отключён на {} мс после {} ошибок подряд",
+                                host, parserProperty.getBreakerOpenMs(), failures);
+                    }
+                    state = State.OPEN;
+                    openedAt = System.nanoTime();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        State state() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Breaker breaker(String url) {
+        String host = URI.create(url).getHost();
+        return breakers.computeIfAbsent(host == null ? "" : host, Breaker::new);
+    }
+
+    private boolean isEnabled() {
+        return parserProperty.getBreakerFailures() > 0;
+    }
+
+    /**
+     * Можно ли сейчас идти на хост ссылки. Каждый разрешённый запрос должен закончиться
+     * onSuccess или onFailure, иначе проба разомкнутого хоста повторится только через breakerOpenMs.
+     */
+    public boolean allow(String url) {
+        if (!isEnabled()) return true;
+
+        Breaker breaker = breaker(url);
+        if (breaker.allow()) return true;
+
+        meterRegistry.counter("parser.breaker.rejected", "host", breaker.host).increment();
+        return false;
+    }
+
+    public void onSuccess(String url) {
+        if (isEnabled()) breaker(url).onSuccess();
+    }
+
+    public void onFailure(String url) {
+        if (isEnabled()) breaker(url).onFailure();
+    }
+
+    public State getState(String url) {
+        return breaker(url).state();
+    }
+
+    /**
+     * Хосты, которые сейчас не замкнуты.
+     */
+    public Map<String, State> getTripped() {
+        Map<String, State> tripped = new TreeMap<>();
+        breakers.forEach((host, breaker) -> {
+            State state = breaker.state();
+            if (state != State.CLOSED) tripped.put(host, state);
+        });
+        return tripped;
+    }
+}
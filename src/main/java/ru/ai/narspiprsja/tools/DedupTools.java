@@ -0,0 +1,205 @@
+package ru.ai.narspiprsja.tools;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш уже отправленных статей: ссылка -> хэш текста div.news_text.
+ * Статья с тем же текстом повторно не режется на предложения и не отправляется.
+ * Хэш новой статьи сначала ждёт в pending и попадает в кэш только после publisher confirm её пачки
+ * (см. PublishTools), так что статья, сорвавшаяся на любом этапе, уйдёт в следующем цикле.
+ * Вытеснение — LRU по dedupCapacity и TTL по dedupTtlMs; при заданном dedupFile
+ * записи дописываются в файл и переживают перезапуск.
+ */
+@Service
+@RequiredArgsConstructor
+public class DedupTools {
+    private final ParserProperty parserProperty;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private record Entry(String hash, long time) {
+    }
+
+    private final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > parserProperty.getDedupCapacity();
+        }
+    };
+
+    // Статьи в работе: хэш ждёт подтверждения отправки
+    private final Map<String, Entry> pending = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > parserProperty.getDedupCapacity();
+        }
+    };
+
+    private BufferedWriter index;
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupTools.class);
+
+    @PostConstruct
+    public synchronized void load() {
+        String file = parserProperty.getDedupFile();
+        if (file == null || file.isBlank() || parserProperty.getDedupCapacity() <= 0) return;
+
+        Path path = Path.of(file);
+        try {
+            if (Files.exists(path)) {
+                long now = System.currentTimeMillis();
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String[] parts = line.split("\t");
+                    if (parts.length != 3) continue;
+
+                    // Пустой хэш — статья забыта после неудачной отправки (индекс прежних версий)
+                    Entry entry = new Entry(parts[1], Long.parseLong(parts[2]));
+                    if (entry.hash().isEmpty() || expired(entry, now)) cache.remove(parts[0]);
+                    else cache.put(parts[0], entry);
+                }
+                logger.info("Loaded {} dedup entries from {}", cache.size(), path);
+            }
+
+            compact(path);
+            index = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось открыть индекс дедупликации {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Файл пересобирается из актуального кэша, чтобы не рос бесконечно
+    private void compact(Path path) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : cache.entrySet()) {
+                writer.write(line(e.getKey(), e.getValue()));
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (index == null) return;
+        try {
+            index.close();
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть индекс дедупликации: {}", e.getMessage());
+        }
+        index = null;
+    }
+
+    /**
+     * Проверяет, новая ли статья (или изменился ли её текст). Запомнится она только в remember.
+     *
+     * @return true, если статью нужно обрабатывать
+     */
+    public boolean isFresh(String url, String text) {
+        if (parserProperty.getDedupCapacity() <= 0) {
+            misses.incrementAndGet();
+            return true;
+        }
+
+        String hash = hash(text);
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entry entry = cache.get(url);
+            if (entry != null && entry.hash().equals(hash) && !expired(entry, now)) {
+                hits.incrementAndGet();
+                return false;
+            }
+
+            pending.put(url, new Entry(hash, now));
+        }
+
+        misses.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Запомнить статьи, отправка которых подтверждена брокером.
+     */
+    public synchronized void remember(List<String> urls) {
+        for (String url : urls) {
+            Entry entry = pending.remove(url);
+            if (entry == null) continue;
+
+            cache.put(url, entry);
+            append(url, entry);
+        }
+    }
+
+    /**
+     * Забыть статьи, которые не удалось отправить, чтобы они ушли в следующем цикле.
+     */
+    public synchronized void forget(List<String> urls) {
+        for (String url : urls) pending.remove(url);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private boolean expired(Entry entry, long now) {
+        long ttl = parserProperty.getDedupTtlMs();
+        return ttl > 0 && now - entry.time() > ttl;
+    }
+
+    private void append(String url, Entry entry) {
+        if (index == null) return;
+        try {
+            index.write(line(url, entry));
+            index.flush();
+        } catch (IOException e) {
+            logger.warn("Не удалось записать индекс дедупликации: {}", e.getMessage());
+        }
+    }
+
+    private static String line(String url, Entry entry) {
+        return url + "\t" + entry.hash() + "\t" + entry.time() + "\n";
+    }
+
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Дублирующие запросы против хвоста задержек: если ответа нет дольше hedgePercentile времени ответа
+ * хоста (по последним hedgeWindow ответам), уходит второй такой же запрос, и берётся первый пришедший ответ.
+ * Порог не ниже hedgeMinDelayMs и появляется только после hedgeMinSamples ответов хоста. Дубль уходит,
+ * только если вызывающий сразу, без ожидания, дал на него токен RateTools и место в лимите хоста;
+ * иначе ждём первый запрос. Как только есть ответ, проигравший запрос отменяется; при прерывании
+ * отменяются оба.
+ * Порог по хостам — метрика parser.fetch.hedge.delay, исход дублей — parser.fetch.hedges{outcome}.
+ */
+@Service
+@RequiredArgsConstructor
+public class HedgeTools {
+    // Перцентиль пересчитывается не на каждый ответ, а раз в столько ответов
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final ParserProperty parserProperty;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Место для дубля: токен RateTools и разрешение хоста. tryAcquire не ждёт — вызывающий уже держит
+     * разрешение первого запроса; release вызывается, когда дубль завершился или отменён.
+     */
+    public interface HedgeSlot {
+        boolean tryAcquire();
+
+        void release();
+    }
+
+    private final class Latencies {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] samples = new long[Math.max(1, parserProperty.getHedgeWindow())];
+        private int count;
+        private int next;
+        private int fresh;
+        private volatile long threshold = -1;
+
+        Latencies(String host) {
+            Gauge.builder("parser.fetch.hedge.delay", this, l -> l.threshold < 0 ? Double.NaN : l.threshold / 1e6)
+                    .description("Время ответа хоста, после которого уходит дублирующий запрос")
+                    .baseUnit("milliseconds")
+                    .tag("host", host)
+                    .register(meterRegistry);
+        }
+
+        void record(long nanos) {
+            lock.lock();
+            try {
+                samples[next] = nanos;
+                next = (next + 1) % samples.length;
+                if (count < samples.length) count++;
+
+                if (count < parserProperty.getHedgeMinSamples()) return;
+                if (threshold >= 0 && ++fresh < RECOMPUTE_EVERY) return;
+
+                fresh = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(parserProperty.getHedgePercentile() * count) - 1;
+                threshold = sorted[Math.clamp(index, 0, count - 1)];
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Latencies latencies(String url) {
+        String host = URI.create(url).getHost();
+        String key = host == null ? "" : host;
+        return latencies.computeIfAbsent(key, Latencies::new);
+    }
+
+    private boolean isEnabled() {
+        return parserProperty.getHedgePercentile() > 0;
+    }
+
+    /**
+     * Через сколько наносекунд без ответа слать дубль; -1 — не слать.
+     */
+    public long delayNanos(String url) {
+        if (!isEnabled()) return -1;
+
+        long threshold = latencies(url).threshold;
+        if (threshold < 0) return -1;
+        return Math.max(threshold, TimeUnit.MILLISECONDS.toNanos(parserProperty.getHedgeMinDelayMs()));
+    }
+
+    /**
+     * Запрос через fetcher с дублем по порогу хоста. Ошибки — как у PageFetcher.fetch.
+     */
+    public Fetched fetch(PageFetcher fetcher, String url, Map<String, String> headers, HedgeSlot slot)
+            throws IOException, InterruptedException {
+        if (!isEnabled()) return fetcher.fetch(url, headers);
+
+        long delay = delayNanos(url);
+        if (delay < 0) {
+            // Порога ещё нет: обычный запрос, но его время идёт в окно хоста
+            long start = System.nanoTime();
+            Fetched res = fetcher.fetch(url, headers);
+            latencies(url).record(System.nanoTime() - start);
+            return res;
+        }
+
+        CompletableFuture<Fetched> primary = timed(fetcher, url, headers);
+        CompletableFuture<Fetched> hedge = null;
+        try {
+            if (answered(primary, delay)) return unwrap(primary);
+
+            if (!slot.tryAcquire()) {
+                meterRegistry.counter("parser.fetch.hedges", "outcome", "skipped").increment();
+                return unwrap(primary);
+            }
+            hedge = timed(fetcher, url, headers);
+            hedge.whenComplete((res, e) -> slot.release());
+
+            Fetched res = unwrap(firstAnswer(primary, hedge));
+            boolean won = hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.getNow(null) == res;
+            meterRegistry.counter("parser.fetch.hedges", "outcome", won ? "won" : "lost").increment();
+            return res;
+        } finally {
+            // Завершённым запросам отмена ничего не делает; проигравший или брошенный прерыванием обрывается
+            primary.cancel(true);
+            if (hedge != null) hedge.cancel(true);
+        }
+    }
+
+    // Пришёл ли ответ (или ошибка) за delay наносекунд
+    private static boolean answered(CompletableFuture<Fetched> future, long delay) throws InterruptedException {
+        try {
+            future.get(delay, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    // Возвращается future самого fetcher, а не производный: иначе отмена не дойдёт до запроса
+    private CompletableFuture<Fetched> timed(PageFetcher fetcher, String url, Map<String, String> headers) {
+        long start = System.nanoTime();
+        CompletableFuture<Fetched> request = fetcher.fetchAsync(url, headers);
+        request.whenComplete((res, e) -> {
+            if (e == null) latencies(url).record(System.nanoTime() - start);
+        });
+        return request;
+    }
+
+    // Ответ, пришедший первым; исключение — только если не удались оба запроса
+    private static CompletableFuture<Fetched> firstAnswer(CompletableFuture<Fetched> a, CompletableFuture<Fetched> b) {
+        CompletableFuture<Fetched> first = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+
+        BiConsumer<Fetched, Throwable> race = (res, e) -> {
+            if (e == null) first.complete(res);
+            else if (failed.incrementAndGet() == 2) first.completeExceptionally(e);
+        };
+        a.whenComplete(race);
+        b.whenComplete(race);
+        return first;
+    }
+
+    private static Fetched unwrap(CompletableFuture<Fetched> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(cause);
+        }
+    }
+}
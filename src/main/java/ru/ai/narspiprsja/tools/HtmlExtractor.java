@@ -0,0 +1,127 @@
+package ru.ai.narspiprsja.tools;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковое извлечение одного блока страницы без полного DOM.
+ * Jsoup StreamParser отдаёт элементы по мере закрытия: всё, что закрылось вне искомого блока,
+ * сразу отцепляется от дерева, а разбор останавливается, как только закрылся сам блок.
+ */
+public final class HtmlExtractor {
+    private static final Map<String, Evaluator> evaluators = new ConcurrentHashMap<>();
+
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final int META_SCAN_BYTES = 2048;
+
+    private HtmlExtractor() {
+    }
+
+    /**
+     * Первый в порядке документа элемент, подходящий под query, или null, если его нет.
+     *
+     * @param charset кодировка из Content-Type; если null — ищется в meta, затем UTF-8
+     */
+    public static Element extract(byte[] body, String charset, String baseUri, String query) throws IOException {
+        Evaluator target = evaluators.computeIfAbsent(query, QueryParser::parse);
+        Reader reader = new BytesReader(body, charset(body, charset));
+
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser()).parse(reader, baseUri)) {
+            Iterator<Element> elements = streamer.iterator();
+            while (elements.hasNext()) {
+                Element element = elements.next();
+
+                // Потомки искомого блока закрываются раньше него и нужны целиком
+                if (insideTarget(element, target)) continue;
+
+                if (element.is(target)) {
+                    streamer.stop();
+                    return element;
+                }
+
+                element.remove();
+            }
+            return null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean insideTarget(Element element, Evaluator target) {
+        for (Element parent = element.parent(); parent != null; parent = parent.parent()) {
+            if (parent.is(target)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reader прямо поверх массива: в отличие от InputStreamReader не копирует байты в свой буфер.
+     */
+    private static final class BytesReader extends Reader {
+        private final ByteBuffer in;
+        private final CharsetDecoder decoder;
+        private boolean flushed;
+
+        BytesReader(byte[] body, Charset charset) {
+            this.in = ByteBuffer.wrap(body);
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) return 0;
+            if (flushed) return -1;
+
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isUnderflow() && decoder.flush(out).isUnderflow()) flushed = true;
+
+            int read = out.position() - off;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Charset charset(byte[] body, String declared) {
+        String name = declared;
+        if (name == null) {
+            String head = new String(body, 0, Math.min(body.length, META_SCAN_BYTES), StandardCharsets.ISO_8859_1);
+            Matcher matcher = META_CHARSET.matcher(head);
+            if (matcher.find()) name = matcher.group(1);
+        }
+
+        if (name == null) return StandardCharsets.UTF_8;
+        try {
+            return Charset.forName(name);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
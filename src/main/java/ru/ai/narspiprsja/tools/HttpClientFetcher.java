@@ -0,0 +1,135 @@
+package ru.ai.narspiprsja.tools;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.config.ParserConfig;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Загрузка через общий java.net.http.HttpClient: соединения с хостами *.cap.ru живут
+ * в пуле клиента и переиспользуются между запросами (keep-alive, HTTP/2 при поддержке
+ * сервером), так что TLS-рукопожатие делается один раз на соединение.
+ * Таймаут установки соединения и таймаут ответа задаются раздельно.
+ */
+@Service
+@ConditionalOnProperty(prefix = "parse.config", name = "fetcher", havingValue = "http", matchIfMissing = true)
+public class HttpClientFetcher implements PageFetcher {
+    private final ParserProperty parserProperty;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientFetcher.class);
+
+    public HttpClientFetcher(ParserProperty parserProperty) {
+        this.parserProperty = parserProperty;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(parserProperty.getConnectTimeoutMs()))
+                .executor(executor)
+                .build();
+    }
+
+    private HttpRequest request(String url, Map<String, String> extraHeaders) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .timeout(Duration.ofMillis(parserProperty.getReadTimeoutMs()))
+                .header("User-Agent", ParserConfig.USER_AGENT)
+                .header("Referer", ParserConfig.REFERRER)
+                .header("Accept-Language", ParserConfig.ACCEPT_LANGUAGE)
+                .header("Accept-Encoding", ParserConfig.ACCEPT_ENCODING);
+
+        extraHeaders.forEach(builder::setHeader);
+        return builder.build();
+    }
+
+    @Override
+    public Fetched fetch(String url, Map<String, String> extraHeaders) throws IOException {
+        try {
+            return toFetched(client.send(request(url, extraHeaders), HttpResponse.BodyHandlers.ofByteArray()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Загрузка прервана: " + url);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Fetched> fetchAsync(String url, Map<String, String> extraHeaders) {
+        CompletableFuture<HttpResponse<byte[]>> sent =
+                client.sendAsync(request(url, extraHeaders), HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<Fetched> fetched = sent.thenApply(res -> {
+            try {
+                return toFetched(res);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Отмена результата (проигравший дубль, см. HedgeTools) обрывает и сам обмен с сервером
+        fetched.whenComplete((res, e) -> {
+            if (fetched.isCancelled()) sent.cancel(true);
+        });
+        return fetched;
+    }
+
+    private static Fetched toFetched(HttpResponse<byte[]> res) throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        res.headers().map().forEach((name, values) -> {
+            if (!values.isEmpty()) headers.put(name, values.getFirst());
+        });
+
+        byte[] body = decode(headers.get("Content-Encoding"), res.body());
+        return new Fetched(res.uri().toString(), res.statusCode(), headers, body);
+    }
+
+    // HttpClient, в отличие от Jsoup, не распаковывает тело сам
+    private static byte[] decode(String encoding, byte[] body) throws IOException {
+        if (encoding == null || body.length == 0) return body;
+
+        String enc = encoding.trim().toLowerCase();
+        if (List.of("gzip", "x-gzip").contains(enc)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return in.readAllBytes();
+            }
+        }
+        if (enc.equals("deflate")) {
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(body))) {
+                return in.readAllBytes();
+            }
+        }
+        if (!enc.equals("identity")) {
+            logger.warn("Неподдерживаемое сжатие ответа: {}", encoding);
+        }
+        return body;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.close();
+        executor.shutdown();
+    }
+}
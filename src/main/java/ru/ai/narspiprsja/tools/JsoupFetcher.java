@@ -0,0 +1,81 @@
+package ru.ai.narspiprsja.tools;
+
+import jakarta.annotation.PreDestroy;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.config.ParserConfig;
+import ru.ai.narspiprsja.model.Fetched;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Прежний способ загрузки через Jsoup.connect: отдельное соединение на каждый запрос.
+ * Включается parse.config.fetcher=jsoup.
+ * Асинхронный запрос идёт в своём виртуальном потоке; отмена future прерывает поток, и блокирующее
+ * чтение сокета обрывается вместе с соединением — иначе отменённый дубль (HedgeTools) качал бы
+ * страницу дальше, уже без разрешения хоста.
+ */
+@Service
+@ConditionalOnProperty(prefix = "parse.config", name = "fetcher", havingValue = "jsoup")
+public class JsoupFetcher implements PageFetcher {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Override
+    public Fetched fetch(String url, Map<String, String> extraHeaders) throws IOException {
+        Connection.Response res = Jsoup.connect(url)
+                .userAgent(ParserConfig.USER_AGENT)
+                .referrer(ParserConfig.REFERRER)
+                .header("Accept-Language", ParserConfig.ACCEPT_LANGUAGE)
+                .header("Accept-Encoding", ParserConfig.ACCEPT_ENCODING)
+                .headers(extraHeaders)
+                .ignoreHttpErrors(true)
+                .ignoreContentType(true)
+                .timeout(ParserConfig.TIMEOUT_MS)
+                .execute();
+
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(res.headers());
+        return new Fetched(res.url().toString(), res.statusCode(), headers, res.bodyAsBytes());
+    }
+
+    @Override
+    public CompletableFuture<Fetched> fetchAsync(String url, Map<String, String> extraHeaders) {
+        Request request = new Request();
+        request.task = executor.submit(() -> {
+            try {
+                request.complete(fetch(url, extraHeaders));
+            } catch (IOException | RuntimeException e) {
+                request.completeExceptionally(e);
+            }
+        });
+        // Отмена могла прийти раньше, чем появилась задача
+        if (request.isCancelled()) request.task.cancel(true);
+        return request;
+    }
+
+    // Future запроса, отмена которого прерывает поток загрузки
+    private static final class Request extends CompletableFuture<Fetched> {
+        private volatile Future<?> task;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> running = task;
+            if (cancelled && running != null) running.cancel(true);
+            return cancelled;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
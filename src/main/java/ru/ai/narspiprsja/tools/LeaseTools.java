@@ -0,0 +1,50 @@
+package ru.ai.narspiprsja.tools;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.config.RabbitConfig;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lease части между экземплярами парсера без отдельного хранилища.
+ * Lease — эксклюзивная очередь prs.lease.&lt;part&gt;: объявить её может только одно соединение с брокером,
+ * а удаляется она вместе с этим соединением. Экземпляр держит часть, пока жив, повторное
+ * объявление тем же соединением проходит, а после его падения часть забирает следующий.
+ */
+@Service
+@RequiredArgsConstructor
+public class LeaseTools {
+    private final RabbitConfig rabbitConfig;
+    private final RabbitTemplate rabbitTemplate;
+
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseTools.class);
+
+    /**
+     * @return true, если часть закреплена за этим экземпляром
+     */
+    public boolean hold(String part) {
+        String queue = rabbitConfig.getLeaseQueuePrefix() + part;
+        try {
+            rabbitTemplate.execute(channel -> channel.queueDeclare(queue, false, true, true, null));
+        } catch (AmqpException e) {
+            // RESOURCE_LOCKED: очередь объявлена другим соединением
+            if (held.remove(part)) {
+                logger.warn("[{}] Lease lost: {}", part, e.getMessage());
+            } else {
+                logger.debug("[{}] Lease is held by another instance", part);
+            }
+            return false;
+        }
+
+        if (held.add(part)) logger.info("[{}] Lease acquired", part);
+        return true;
+    }
+}
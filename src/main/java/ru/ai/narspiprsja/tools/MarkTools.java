@@ -0,0 +1,101 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.model.Mark;
+import ru.ai.narspiprsja.model.Url;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Хранит для каждой части самую свежую уже отправленную новость (дату и ссылки с этой датой),
+ * чтобы обход списка новостей останавливался на известных страницах.
+ */
+@Service
+@RequiredArgsConstructor
+public class MarkTools {
+    private final ParserProperty parserProperty;
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Mark> marks = new HashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkTools.class);
+
+    @PostConstruct
+    public void load() {
+        Path file = Path.of(parserProperty.getMarkFile());
+        if (!Files.exists(file)) return;
+
+        try {
+            marks.putAll(objectMapper.readValue(file.toFile(), new TypeReference<Map<String, Mark>>() {}));
+            logger.info("Loaded marks for {} parts from {}", marks.size(), file);
+        } catch (IOException e) {
+            logger.warn("Не удалось прочитать отметки из {}: {}", file, e.getMessage());
+        }
+    }
+
+    public synchronized boolean isSeen(String part, Url url) {
+        Mark mark = marks.get(part);
+        if (mark == null || url.date() == null) return false;
+
+        if (url.date().isBefore(mark.date())) return true;
+        return url.date().isEqual(mark.date()) && mark.links().contains(url.link());
+    }
+
+    /**
+     * Сдвигает отметку части на самые свежие из переданных ссылок и сохраняет её на диск.
+     */
+    public synchronized void advance(String part, List<Url> urls) {
+        LocalDateTime newest = null;
+        for (Url url : urls) {
+            if (url.date() != null && (newest == null || url.date().isAfter(newest))) {
+                newest = url.date();
+            }
+        }
+        if (newest == null) return;
+
+        Mark mark = marks.get(part);
+        if (mark != null && newest.isBefore(mark.date())) return;
+
+        Set<String> links = new HashSet<>();
+        if (mark != null && newest.isEqual(mark.date())) {
+            links.addAll(mark.links());
+        }
+        for (Url url : urls) {
+            if (newest.isEqual(url.date())) links.add(url.link());
+        }
+
+        marks.put(part, new Mark(newest, links));
+        save();
+    }
+
+    private void save() {
+        Path file = Path.of(parserProperty.getMarkFile());
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(tmp.toFile(), marks);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить отметки в {}: {}", file, e.getMessage());
+        }
+    }
+}
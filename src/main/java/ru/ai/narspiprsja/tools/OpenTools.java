@@ -1,76 +1,247 @@
 package ru.ai.narspiprsja.tools;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import opennlp.tools.tokenize.Tokenizer;
 import opennlp.tools.util.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import ru.ai.narspiprsja.config.OpenConfig;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.text.Normalizer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 public class OpenTools {
     private final OpenConfig openConfig;
+    private final MeterRegistry meterRegistry;
 
-    private SentenceDetectorME sentenceDetector;
+    private Timer sentencesTimer;
+    private Timer maskTimer;
+    private DistributionSummary sentencesInput;
+
+    // Модель загружается один раз и общая для всех детекторов
+    private volatile CompletableFuture<SentenceModel> models;
+
+    // SentenceDetectorME не потокобезопасен: каждый вызов берёт свой экземпляр из пула
+    private final BlockingQueue<SentenceDetectorME> detectors =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenTools.class);
 
     @PostConstruct
     public void init() throws Exception {
+        sentencesTimer = Timer.builder("parser.sentences")
+                .description("Разбиение текста статьи на предложения")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        maskTimer = Timer.builder("parser.mask")
+                .description("Маскировка сокращений перед детектором предложений")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        sentencesInput = DistributionSummary.builder("parser.sentences.input")
+                .description("Длина текста статьи")
+                .baseUnit("chars")
+                .register(meterRegistry);
+
+        if (!openConfig.isBackgroundModels()) {
+            models = CompletableFuture.completedFuture(loadModels());
+            return;
+        }
+
+        // Вызовы до окончания загрузки ждут её; готовность приложения отдаёт HealthConfig
+        models = CompletableFuture.supplyAsync(() -> {
+            try {
+                return loadModels();
+            } catch (IOException e) {
+                logger.error("Не удалось загрузить модели OpenNLP: {}", e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+        }, task -> Thread.ofVirtual().name("open-models").start(task));
+    }
+
+    private SentenceModel loadModels() throws IOException {
+        long start = System.nanoTime();
+
+        SentenceModel sentenceModel;
         try (InputStream sentIn = new ClassPathResource("models/opennlp-ru-ud-gsd-sentence-1.3-2.5.4.bin").getInputStream()) {
-            sentenceDetector = new SentenceDetectorME(new SentenceModel(sentIn));
+            sentenceModel = new SentenceModel(sentIn);
         }
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("parser.models.load").record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Модели OpenNLP загружены за {} мс", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return sentenceModel;
+    }
+
+    private SentenceModel models() {
+        return models.join();
+    }
+
+    /**
+     * @return true, когда модели загружены
+     */
+    public boolean isReady() {
+        CompletableFuture<SentenceModel> current = models;
+        return current != null && current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    public boolean isFailed() {
+        CompletableFuture<SentenceModel> current = models;
+        return current != null && current.isCompletedExceptionally();
     }
 
-    private String normalizeText(String text) {
+    private Span[] sentPosDetect(String text) {
+        SentenceDetectorME detector = detectors.poll();
+        if (detector == null) {
+            detector = new SentenceDetectorME(models());
+        }
+
+        try {
+            return detector.sentPosDetect(text);
+        } finally {
+            // Лишние экземпляры сверх размера пула просто отбрасываются
+            detectors.offer(detector);
+        }
+    }
+
+    // Токены нужны только для бюджета чанка: SimpleTokenizer режет по смене класса символов,
+    // не требует модели и потокобезопасен
+    private static Span[] tokenizePos(String text) {
+        return SimpleTokenizer.INSTANCE.tokenizePos(text);
+    }
+
+    public int countTokens(String text) {
+        return tokenizePos(text).length;
+    }
+
+    /**
+     * NFC, управляющие символы и пробельные (\s) — один пробел, тире — дефис, ёлочки и лапки — прямые
+     * кавычки, пробелы по краям обрезаются. Один проход; строка без изменений возвращается как есть.
+     */
+    public String normalizeText(String text) {
         if (text == null) return "";
         String t = Normalizer.normalize(text, Normalizer.Form.NFC);
-        t = t.replaceAll("[\\p{C}&&[^\r\n\t]]+", " ");
-        t = t.replace('\u2013', '-').replace('\u2014', '-');
-        t = t.replace('«', '"').replace('»', '"').replace('“', '"').replace('”', '"');
-        t = t.replaceAll("\\s+", " ").trim();
-        return t;
+
+        int n = t.length();
+        int i = 0;
+        while (i < n) {
+            int cp = t.codePointAt(i);
+            if (isBlank(cp) || replacement(cp) != 0) {
+                // Одиночный пробел между словами менять не нужно
+                if (cp != ' ' || i == 0 || i + 1 == n || isBlank(t.codePointAt(i + 1))) break;
+            }
+            i += Character.charCount(cp);
+        }
+        if (i == n) return t;
+
+        StringBuilder sb = new StringBuilder(n).append(t, 0, i);
+        boolean space = false;
+        while (i < n) {
+            int cp = t.codePointAt(i);
+            int len = Character.charCount(cp);
+
+            if (isBlank(cp)) {
+                space = true;
+            } else {
+                if (space && !sb.isEmpty()) sb.append(' ');
+                space = false;
+
+                char replaced = replacement(cp);
+                if (replaced != 0) sb.append(replaced);
+                else sb.append(t, i, i + len);
+            }
+            i += len;
+        }
+        return sb.toString();
+    }
+
+    // Пробельный символ \s или управляющий \p{C}; \r, \n и \t — и то и другое
+    private static boolean isBlank(int cp) {
+        if (cp == ' ' || (cp >= '\t' && cp <= '\r')) return true;
+        return switch (Character.getType(cp)) {
+            case Character.CONTROL, Character.FORMAT, Character.PRIVATE_USE,
+                 Character.SURROGATE, Character.UNASSIGNED -> true;
+            default -> false;
+        };
+    }
+
+    private static char replacement(int cp) {
+        return switch (cp) {
+            case '\u2013', '\u2014' -> '-';
+            case '«', '»', '“', '”' -> '"';
+            default -> 0;
+        };
     }
 
     /**
      * Детектируем предложения, затем делаем пост-обработку, чтобы склеить
      * ложные разрезы (например после запятой, после нумерации и т.п.).
+     * Безопасен для одновременного вызова из разных потоков.
      */
     public List<String> detectSentences(String text) {
+        long start = System.nanoTime();
         String cleaned = normalizeText(text);
+
+        long maskStart = System.nanoTime();
         String masked = openConfig.mask(cleaned);
+        maskTimer.record(System.nanoTime() - maskStart, TimeUnit.NANOSECONDS);
 
-        Span[] spans = sentenceDetector.sentPosDetect(masked);
-        List<String> sents = new ArrayList<>();
-        for (Span s : spans) {
-            String part = masked.substring(s.getStart(), s.getEnd()).trim();
-            sents.add(openConfig.unmask(part));
-        }
+        Span[] spans = sentPosDetect(masked);
 
-        // Пост-обработка: сливаем очевидно неверные разрывы
-        List<String> merged = new ArrayList<>();
-        for (String cur : sents) {
-            if (merged.isEmpty()) {
-                merged.add(cur);
-                continue;
-            }
+        // Все предложения пишутся подряд через пробел в один буфер, склейка с предыдущим —
+        // расширение его диапазона; строки создаются один раз в конце
+        StringBuilder out = new StringBuilder(masked.length() + spans.length);
+        int[] bounds = new int[spans.length * 2];
+        int count = 0;
+
+        for (Span s : spans) {
+            int from = s.getStart();
+            int to = s.getEnd();
+            while (from < to && masked.charAt(from) <= ' ') from++;
+            while (to > from && masked.charAt(to - 1) <= ' ') to--;
 
-            String prev = merged.getLast();
+            if (count > 0) out.append(' ');
+            int curStart = out.length();
+            openConfig.unmask(masked, from, to, out);
+            int curEnd = out.length();
 
-            if (shouldMerge(prev, cur)) {
-                // склеиваем через пробел
-                merged.set(merged.size() - 1, (prev + " " + cur).trim());
+            // Пост-обработка: сливаем очевидно неверные разрывы
+            if (count > 0 && shouldMerge(out, bounds[2 * count - 2], bounds[2 * count - 1], curStart, curEnd)) {
+                bounds[2 * count - 1] = curEnd;
             } else {
-                merged.add(cur);
+                bounds[2 * count] = curStart;
+                bounds[2 * count + 1] = curEnd;
+                count++;
             }
         }
 
+        List<String> merged = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            merged.add(out.substring(bounds[2 * k], bounds[2 * k + 1]));
+        }
+
+        sentencesTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        sentencesInput.record(cleaned.length());
         return merged;
     }
 
@@ -83,55 +254,144 @@ public class OpenTools {
      */
     public List<String> mergeShortChunks(List<String> chunks, int minSize) {
         List<String> merged = new ArrayList<>();
+
+        // Последний чанк: одиночный хранится как есть, склеенный собирается в buffer
+        String last = null;
+        StringBuilder buffer = new StringBuilder();
+
         for (String chunk : chunks) {
-            if (chunk == null || chunk.trim().isEmpty()) continue;
+            if (chunk == null) continue;
 
-            if (chunk.length() < minSize && !merged.isEmpty()) {
-                // приклеиваем к последнему чанк
-                int lastIndex = merged.size() - 1;
-                String updated = (merged.get(lastIndex) + " " + chunk).trim();
-                merged.set(lastIndex, updated);
+            int to = chunk.length();
+            while (to > 0 && chunk.charAt(to - 1) <= ' ') to--;
+            if (to == 0) continue;
+
+            if (chunk.length() < minSize && (last != null || !buffer.isEmpty())) {
+                // приклеиваем к последнему чанку; пробелы в начале чанка остаются внутри
+                if (last != null) {
+                    buffer.append(last);
+                    last = null;
+                }
+                buffer.append(' ').append(chunk, 0, to);
             } else {
-                merged.add(chunk.trim());
+                addChunk(merged, last, buffer);
+                last = chunk.trim();
             }
         }
+
+        addChunk(merged, last, buffer);
         return merged;
     }
 
+    private static void addChunk(List<String> merged, String last, StringBuilder buffer) {
+        if (last != null) {
+            merged.add(last);
+        } else if (!buffer.isEmpty()) {
+            merged.add(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * Упаковка предложений в чанки не длиннее maxTokens токенов.
+     * Предложения не разрываются, кроме тех, что сами длиннее maxTokens — они режутся по токенам.
+     * Каждый следующий чанк начинается с хвостовых предложений предыдущего,
+     * суммарно не больше overlapTokens токенов.
+     *
+     * @param sentences предложения из detectSentences
+     * @param maxTokens максимальный размер чанка в токенах (0 — без ограничения)
+     * @param overlapTokens размер перекрытия соседних чанков в токенах
+     * @return список чанков
+     */
+    public List<String> chunkSentences(List<String> sentences, int maxTokens, int overlapTokens) {
+        int limit = maxTokens > 0 ? maxTokens : Integer.MAX_VALUE;
+
+        List<String> chunks = new ArrayList<>();
+        Deque<String> current = new ArrayDeque<>();
+        Deque<Integer> sizes = new ArrayDeque<>();
+        int currentTokens = 0;
+
+        for (String sentence : sentences) {
+            if (sentence == null || sentence.isBlank()) continue;
+
+            String text = sentence.trim();
+            Span[] tokens = tokenizePos(text);
 
-    private boolean shouldMerge(String prev, String cur) {
-        if (prev == null || cur == null) return false;
+            for (int from = 0; from == 0 || from < tokens.length; from += limit) {
+                String piece = text;
+                int size = tokens.length;
+                if (tokens.length > limit) {
+                    int to = Math.min(from + limit, tokens.length);
+                    piece = text.substring(tokens[from].getStart(), tokens[to - 1].getEnd());
+                    size = to - from;
+                }
+
+                if (!current.isEmpty() && currentTokens + size > limit) {
+                    chunks.add(String.join(" ", current));
+
+                    // Перекрытие: хвост предыдущего чанка, если он помещается вместе с новым куском
+                    Deque<String> tail = new ArrayDeque<>();
+                    Deque<Integer> tailSizes = new ArrayDeque<>();
+                    int tailTokens = 0;
+                    while (!current.isEmpty()) {
+                        int last = sizes.peekLast();
+                        if (tailTokens + last > overlapTokens || tailTokens + last + size > limit) break;
+                        tail.addFirst(current.pollLast());
+                        tailSizes.addFirst(sizes.pollLast());
+                        tailTokens += last;
+                    }
+
+                    current = tail;
+                    sizes = tailSizes;
+                    currentTokens = tailTokens;
+                }
+
+                current.addLast(piece);
+                sizes.addLast(size);
+                currentTokens += size;
+            }
+        }
+
+        if (!current.isEmpty()) {
+            chunks.add(String.join(" ", current));
+        }
+        return chunks;
+    }
 
-        String prevTrim = prev.trim();
-        String curTrim = cur.trim();
-        if (prevTrim.isEmpty() || curTrim.isEmpty()) return false;
+    // Решение по диапазонам text: prev = [prevStart, prevEnd), cur = [curStart, curEnd)
+    private static boolean shouldMerge(CharSequence text, int prevStart, int prevEnd, int curStart, int curEnd) {
+        while (prevStart < prevEnd && text.charAt(prevStart) <= ' ') prevStart++;
+        while (prevEnd > prevStart && text.charAt(prevEnd - 1) <= ' ') prevEnd--;
+        while (curStart < curEnd && text.charAt(curStart) <= ' ') curStart++;
+        while (curEnd > curStart && text.charAt(curEnd - 1) <= ' ') curEnd--;
+        if (prevStart == prevEnd || curStart == curEnd) return false;
 
-        char last = lastNonSpaceChar(prevTrim);
+        char last = lastNonSpaceChar(text, prevStart, prevEnd);
         if (last == ',' || last == ';' || last == ':' || last == '—' || last == '-') {
             return true;
         }
 
-        Character firstLetter = firstAlphabeticChar(curTrim);
-        if (firstLetter != null && Character.isLowerCase(firstLetter)) {
+        char firstLetter = firstAlphabeticChar(text, curStart, curEnd);
+        if (firstLetter != 0 && Character.isLowerCase(firstLetter)) {
             return true;
         }
 
-        return curTrim.length() <= 3;
+        return curEnd - curStart <= 3;
     }
 
-    private char lastNonSpaceChar(String s) {
-        for (int i = s.length() - 1; i >= 0; i--) {
+    private static char lastNonSpaceChar(CharSequence s, int start, int end) {
+        for (int i = end - 1; i >= start; i--) {
             char c = s.charAt(i);
             if (!Character.isWhitespace(c)) return c;
         }
         return '\0';
     }
 
-    private Character firstAlphabeticChar(String s) {
-        for (int i = 0; i < s.length(); i++) {
+    private static char firstAlphabeticChar(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
             char c = s.charAt(i);
             if (Character.isLetter(c)) return c;
         }
-        return null;
+        return 0;
     }
 }
@@ -0,0 +1,18 @@
+package ru.ai.narspiprsja.tools;
+
+import ru.ai.narspiprsja.model.Fetched;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Загрузка страницы по HTTP. Общие заголовки (User-Agent, Referer, языки, сжатие)
+ * реализация ставит сама, extraHeaders — заголовки конкретного запроса.
+ * Ошибочные коды ответа не считаются исключением, их разбирает вызывающий.
+ */
+public interface PageFetcher {
+    Fetched fetch(String url, Map<String, String> extraHeaders) throws IOException;
+
+    CompletableFuture<Fetched> fetchAsync(String url, Map<String, String> extraHeaders);
+}
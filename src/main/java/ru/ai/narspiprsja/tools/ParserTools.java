@@ -1,5 +1,10 @@
 package ru.ai.narspiprsja.tools;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -9,55 +14,280 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import ru.ai.narspiprsja.config.ParserConfig;
+import ru.ai.narspiprsja.model.Archived;
+import ru.ai.narspiprsja.model.Fetched;
 import ru.ai.narspiprsja.model.Page;
 import ru.ai.narspiprsja.model.Url;
 import ru.ai.narspiprsja.property.ParserProperty;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class ParserTools {
+    private static final String ARTICLE_QUERY = "div.news_text";
+
     private final ParserProperty parserProperty;
 
     private final OpenTools openTools;
+    private final MarkTools markTools;
+    private final DedupTools dedupTools;
+    private final PageFetcher pageFetcher;
+    private final RateTools rateTools;
+    private final BreakerTools breakerTools;
+    private final HedgeTools hedgeTools;
+    private final ArchiveTools archiveTools;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Semaphore> hostLimits = new ConcurrentHashMap<>();
+
+    // Метры регистрируются один раз на набор тегов: builder с гистограммой на каждый запрос дорог
+    private final Map<String, Timer> fetchTimers = new ConcurrentHashMap<>();
+    private final Map<String, ListingMeters> listingMeters = new ConcurrentHashMap<>();
+
+    private record ListingMeters(DistributionSummary pages, Counter urls) {
+    }
+
+    // Валидаторы последнего ответа 200 и результат его разбора, LRU по conditionalCapacity
+    private record Validated(String etag, String lastModified, Object value) {
+    }
+
+    private final Map<String, Validated> validators = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Validated> eldest) {
+            return size() > parserProperty.getConditionalCapacity();
+        }
+    };
+
+    private final AtomicLong notModified = new AtomicLong();
+
+    // Загрузка страниц ленты наперёд (см. parseNewsPage)
+    private final ExecutorService listingExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     private static final Logger logger = LoggerFactory.getLogger(ParserTools.class);
 
+    private Semaphore hostLimit(String url) {
+        return hostLimits.computeIfAbsent(host(url),
+                h -> new Semaphore(Math.max(1, parserProperty.getHostConcurrency())));
+    }
+
+    private static String host(String url) {
+        String host = URI.create(url).getHost();
+        return host == null ? "" : host;
+    }
+
+    // Время одного HTTP-запроса по хосту и коду ответа; error — запрос не дошёл до ответа
+    private Timer fetchTimer(String url, String status) {
+        String host = host(url);
+        return fetchTimers.computeIfAbsent(host + " " + status, key -> Timer.builder("parser.fetch")
+                .description("Загрузка страницы")
+                .tags("host", host, "status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private ListingMeters listingMeters(String part) {
+        return listingMeters.computeIfAbsent(part, p -> new ListingMeters(
+                DistributionSummary.builder("parser.listing.pages")
+                        .description("Страниц ленты за один обход части")
+                        .tag("part", p)
+                        .register(meterRegistry),
+                Counter.builder("parser.listing.urls")
+                        .description("Новых ссылок в ленте")
+                        .tag("part", p)
+                        .register(meterRegistry)));
+    }
+
+    // Разбор тела ответа; IOException уходит в общий обработчик загрузки
+    private interface BodyReader<T> {
+        T read(Fetched res) throws IOException;
+    }
+
     public Optional<Document> fetchPage(String url) {
+        return fetch(url, res -> Jsoup.parse(new ByteArrayInputStream(res.body()), res.charset(), res.url()), false);
+    }
+
+    /**
+     * Загрузка одного блока страницы с разбором в parser; блока нет — parser получает null.
+     * Страница разбирается целиком: блок ленты занимает почти всю страницу, и потоковый HtmlExtractor
+     * здесь не экономит память (см. ExtractBenchmark), его выигрыш — только на блоке статьи.
+     * Загрузка условная: если для ссылки сохранены ETag/Last-Modified, они уходят в
+     * If-None-Match/If-Modified-Since, и при 304 возвращается прежний результат parser
+     * без загрузки и разбора страницы.
+     */
+    public <T> Optional<T> fetchBlock(String url, String query, Function<Element, T> parser) {
+        return fetch(url, res -> parser.apply(
+                Jsoup.parse(new ByteArrayInputStream(res.body()), res.charset(), res.url()).selectFirst(query)), true);
+    }
+
+    private <T> Optional<T> fetch(String url, BodyReader<T> reader, boolean conditional) {
         try {
-            Document doc = Jsoup.connect(url)
-                    .userAgent(ParserConfig.USER_AGENT)
-                    .referrer(ParserConfig.REFERRER)
-                    .header("Accept-Language", ParserConfig.ACCEPT_LANGUAGE)
-                    .ignoreHttpErrors(true)
-                    .timeout(ParserConfig.TIMEOUT_MS)
-                    .get();
-            return Optional.of(doc);
+            return load(url, reader, conditional);
         } catch (IOException e) {
             logger.warn("Ошибка при загрузке страницы: {}, {}", url, e.getMessage());
             return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // В том числе отмена лишней страницы ленты, загруженной наперёд
+            logger.debug("Загрузка страницы прервана: {}", url);
+            return Optional.empty();
+        }
+    }
+
+    // То же, что fetch, но страница, которая не загрузилась, — исключение, а не пустой результат
+    @SuppressWarnings("unchecked")
+    private <T> Optional<T> load(String url, BodyReader<T> reader, boolean conditional)
+            throws IOException, InterruptedException {
+        Semaphore limit;
+        try {
+            limit = hostLimit(url);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Некорректный адрес страницы: {}", url);
+            return Optional.empty();
+        }
+
+        if (!breakerTools.allow(url)) throw new IOException("хост отключён предохранителем");
+
+        Validated cached = conditional ? validated(url) : null;
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            if (cached.etag() != null) headers.put("If-None-Match", cached.etag());
+            if (cached.lastModified() != null) headers.put("If-Modified-Since", cached.lastModified());
+        }
+
+        Fetched res = request(url, headers, limit);
+        if (cached != null && res.status() == 304) {
+            notModified.incrementAndGet();
+            return Optional.ofNullable((T) cached.value());
+        }
+
+        // Сбой сервера, в отличие от 4xx, стоит повторить позже
+        if (res.status() >= 500) throw new IOException("HTTP " + res.status());
+
+        if (!res.isMarkup()) {
+            logger.warn("Неожиданный тип содержимого {}: {}", res.contentType(), url);
+            return Optional.empty();
+        }
+
+        T value = reader.read(res);
+
+        String etag = res.header("ETag");
+        String lastModified = res.header("Last-Modified");
+        if (conditional && res.status() == 200 && (etag != null || lastModified != null)) {
+            synchronized (validators) {
+                validators.put(url, new Validated(etag, lastModified, value));
+            }
+        }
+        return Optional.ofNullable(value);
+    }
+
+    // Запрос через ограничитель скорости хоста; 429/503 повторяется после паузы, выставленной по Retry-After.
+    // Токен и паузу ждут до разрешения хоста (limit), а тело разбирается уже после него: разрешение занято
+    // только на время самого запроса. Долгий ответ дублируется (HedgeTools), 5xx и ошибки соединения идут
+    // в предохранитель хоста
+    private Fetched request(String url, Map<String, String> headers, Semaphore limit)
+            throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            rateTools.acquire(url);
+            limit.acquire();
+
+            long start = System.nanoTime();
+            Fetched res;
+            try {
+                res = hedgeTools.fetch(pageFetcher, url, headers, hedgeSlot(url, limit));
+            } catch (IOException e) {
+                fetchTimer(url, "error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                rateTools.onFailure(url);
+                // Отмена (прерванный поток, лишняя страница ленты) — не отказ хоста; таймаут чтения — отказ
+                if (!Thread.currentThread().isInterrupted()) breakerTools.onFailure(url);
+                throw e;
+            } finally {
+                limit.release();
+            }
+            long latency = System.nanoTime() - start;
+            fetchTimer(url, String.valueOf(res.status())).record(latency, TimeUnit.NANOSECONDS);
+            rateTools.onResponse(url, res.status(), latency, res.header("Retry-After"));
+            if (res.status() >= 500) breakerTools.onFailure(url);
+            else breakerTools.onSuccess(url);
+
+            boolean throttled = res.status() == 429 || res.status() == 503;
+            if (!throttled || attempt >= ParserConfig.THROTTLE_ATTEMPTS) return res;
+        }
+    }
+
+    // Дубль запроса занимает ещё одно разрешение хоста и токен, но не ждёт их
+    private HedgeTools.HedgeSlot hedgeSlot(String url, Semaphore limit) {
+        return new HedgeTools.HedgeSlot() {
+            @Override
+            public boolean tryAcquire() {
+                if (!limit.tryAcquire()) return false;
+                if (rateTools.tryAcquire(url)) return true;
+
+                limit.release();
+                return false;
+            }
+
+            @Override
+            public void release() {
+                limit.release();
+            }
+        };
+    }
+
+    private Validated validated(String url) {
+        synchronized (validators) {
+            return validators.get(url);
         }
     }
 
+    public long getNotModified() {
+        return notModified.get();
+    }
+
     public List<Url> refactorPage(String part, int page) {
-        List<Url> links = new ArrayList<>();
-        String url = ParserConfig.BASE_URL.formatted(part) + ParserConfig.NEWS_PATH.formatted(
-                parserProperty.getDate(), page);
+        return fetchNewsPage(part, parserProperty.getDate(), page).orElse(List.of());
+    }
 
-        Optional<Document> docOpt = fetchPage(url);
-        if (docOpt.isEmpty()) {
+    /**
+     * Страница ленты части с явным date_start (см. BackfillTools).
+     *
+     * @return пусто, если страница не загрузилась; пустой список — в ленте нет новостей
+     */
+    public Optional<List<Url>> fetchNewsPage(String part, String dateStart, int page) {
+        String url = parserProperty.getBaseUrl().formatted(part) + ParserConfig.NEWS_PATH.formatted(dateStart, page);
+
+        Optional<List<Url>> links = fetchBlock(url, "div.news_list", newsList -> extractUrls(part, url, newsList));
+        if (links.isEmpty()) {
             logger.info("Нет HTML для {}", url);
-            return links;
         }
 
-        Element newsList = docOpt.get().selectFirst("div.news_list");
+        return links;
+    }
+
+    private List<Url> extractUrls(String part, String url, Element newsList) {
+        List<Url> links = new ArrayList<>();
+
         if (newsList == null) {
             logger.info("Нет news_list в {}", url);
             return links;
@@ -69,7 +299,7 @@ public class ParserTools {
             Element dateTag = item.selectFirst("div.news-list_date span");
 
             if (linkTag != null && dateTag != null) {
-                String link = ParserConfig.BASE_URL.formatted(part) + linkTag.attr("href");
+                String link = parserProperty.getBaseUrl().formatted(part) + linkTag.attr("href");
 
                 LocalDateTime date;
                 try {
@@ -86,39 +316,156 @@ public class ParserTools {
         return links;
     }
 
-    public List<Url> parseNewsPage(String part) {
+    /**
+     * Обход ленты части до первой пустой страницы или страницы без новых ссылок.
+     * Обычно новое есть только на первой странице, поэтому обход начинается с одной страницы, а окно
+     * загрузки наперёд удваивается (до listingPrefetch) только после страницы, где новое всё.
+     * Страницы разбираются строго по порядку; загрузки за последней нужной страницей отменяются.
+     *
+     * @return пусто, если какая-то страница не загрузилась: конец ленты не известен, и отметку части
+     * двигать нельзя, иначе новости с незагруженных страниц пропадут
+     */
+    public Optional<List<Url>> parseNewsPage(String part) {
         List<Url> news = new ArrayList<>();
-        int page = 1;
+        int max = Math.max(1, parserProperty.getListingPrefetch());
+        int window = 1;
 
-        while (true) {
-            List<Url> links = refactorPage(part, page);
-            if (links.isEmpty()) break;
+        Deque<Future<Optional<List<Url>>>> ahead = new ArrayDeque<>();
+        int next = 1;
+        int page = 0;
+        boolean complete = false;
 
-            news.addAll(links);
-            page++;
+        try {
+            while (true) {
+                while (ahead.size() < window) {
+                    int p = next++;
+                    ahead.addLast(listingExecutor.submit(
+                            () -> fetchNewsPage(part, parserProperty.getDate(), p)));
+                }
 
-            try {
-                Thread.sleep(ParserConfig.SLEEP_MS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Парсинг прерван", e);
-                break;
+                Optional<List<Url>> fetched = ahead.pollFirst().get();
+                page++;
+                if (fetched.isEmpty()) {
+                    logger.warn("[{}] Страница ленты {} не загрузилась, обход части прерван", part, page);
+                    break;
+                }
+
+                List<Url> links = fetched.get();
+                if (links.isEmpty()) {
+                    complete = true;
+                    break;
+                }
+
+                List<Url> fresh = links.stream()
+                        .filter(url -> !markTools.isSeen(part, url))
+                        .toList();
+
+                // Дальше идут только уже отправленные новости
+                if (fresh.isEmpty()) {
+                    complete = true;
+                    break;
+                }
+
+                news.addAll(fresh);
+
+                // Страница новая целиком — следующая, скорее всего, тоже нужна
+                if (fresh.size() == links.size()) window = Math.min(max, window * 2);
             }
+        } catch (ExecutionException e) {
+            logger.error("[{}] Ошибка обхода ленты на странице {}: {}", part, page + 1, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ahead.forEach(future -> future.cancel(true));
         }
 
-        return news;
+        ListingMeters meters = listingMeters(part);
+        meters.pages().record(page);
+        if (!complete) return Optional.empty();
+
+        meters.urls().increment(news.size());
+        return Optional.of(news);
     }
 
     public Optional<Page> parseArticlePage(long postId, String url) {
-        Optional<Document> docOpt = fetchPage(url);
-        if (docOpt.isEmpty()) return Optional.empty();
+        try {
+            return fetchArticleText(postId, url).flatMap(text -> parseArticleText(postId, url, text));
+        } catch (IOException e) {
+            logger.warn("Ошибка при загрузке страницы: {}, {}", url, e.getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Сетевая часть разбора статьи: загрузка и текст div.news_text (см. PipelineTools).
+     * Загруженный HTML пишется в архив (см. ArchiveTools); ответ 304 не пишется — страница уже там.
+     *
+     * @return пусто, если на странице нет текста статьи
+     * @throws IOException страница не загрузилась — статью стоит повторить позже
+     */
+    public Optional<String> fetchArticleText(long postId, String url) throws IOException, InterruptedException {
+        return load(url, res -> {
+            archiveTools.append(postId, res);
+            return articleText(HtmlExtractor.extract(res.body(), res.charset(), res.url(), ARTICLE_QUERY));
+        }, true);
+    }
+
+    /**
+     * Текст статьи из записи архива — то же извлечение, что в fetchArticleText, но без сети.
+     */
+    public Optional<String> archivedText(Archived entry) throws IOException {
+        return Optional.ofNullable(articleText(
+                HtmlExtractor.extract(entry.body(), entry.charset(), entry.url(), ARTICLE_QUERY)));
+    }
+
+    private static String articleText(Element block) {
+        return block == null ? null : block.text();
+    }
 
-        Element textBlock = docOpt.get().selectFirst("div.news_text");
-        if (textBlock == null) return Optional.empty();
+    /**
+     * Разбор уже загруженной страницы статьи: текст из div.news_text режется на предложения,
+     * которые упаковываются в чанки по maxTokens токенов.
+     */
+    public Optional<Page> parseArticle(long postId, String url, Document doc) {
+        return Optional.ofNullable(extractText(doc))
+                .flatMap(text -> parseArticleText(postId, url, text));
+    }
 
-        List<String> badChunks = openTools.detectSentences(textBlock.text());
-        List<String> chunks = openTools.mergeShortChunks(badChunks, parserProperty.getOverlapTokens());
+    private String extractText(Document doc) {
+        return articleText(doc.selectFirst(ARTICLE_QUERY));
+    }
+
+    /**
+     * Вычислительная часть разбора статьи: проверка на дубликат, предложения и чанки.
+     */
+    public Optional<Page> parseArticleText(long postId, String url, String text) {
+        if (!dedupTools.isFresh(url, text)) {
+            logger.debug("Статья не изменилась, пропуск: {}", url);
+            return Optional.empty();
+        }
+
+        return Optional.of(chunkArticleText(postId, url, text));
+    }
+
+    /**
+     * Предложения и чанки без проверки на дубликат: повторный разбор архива (см. ReplayTools)
+     * как раз пересобирает статьи с неизменным текстом.
+     */
+    public Page chunkArticleText(long postId, String url, String text) {
+        // Обрывки короче minSentenceChars символов приклеиваются к предыдущему предложению
+        List<String> sentences = openTools.mergeShortChunks(
+                openTools.detectSentences(text), parserProperty.getMinSentenceChars());
+        List<String> chunks = openTools.chunkSentences(
+                sentences, parserProperty.getMaxTokens(), parserProperty.getOverlapTokens());
+
+        return new Page(postId, url, chunks);
+    }
 
-        return Optional.of(new Page(postId, url, String.join(parserProperty.getSplitter(), chunks)));
+    @PreDestroy
+    public void shutdown() {
+        listingExecutor.shutdownNow();
     }
 }
@@ -0,0 +1,234 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка статей по этапам, связанным ограниченными очередями:
+ * <ol>
+ *     <li>fetch — загрузка и текст статьи, виртуальный поток на статью, не больше fetchConcurrency сразу;</li>
+ *     <li>nlp — дубликаты, предложения и чанки на nlpThreads платформенных потоках;</li>
+ *     <li>publish — передача в PublishTools одним виртуальным потоком.</li>
+ * </ol>
+ * Заполненная очередь останавливает предыдущий этап: медленный брокер сначала заполняет очередь
+ * перед отправкой, затем очередь перед NLP, и только потом перестают запускаться новые загрузки.
+ */
+@Service
+@RequiredArgsConstructor
+public class PipelineTools {
+    private final ParserProperty parserProperty;
+
+    private final ParserTools parserTools;
+    private final PublishTools publishTools;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Ход статьи: handed — статья передана в PublishTools или отброшена (не изменилась, нет текста),
+     * delivered — её пачка подтверждена брокером или записана в буфер отправки (см. PublishTools.submit).
+     * Ошибка загрузки или разбора завершает оба future исключением.
+     */
+    public record Progress(CompletableFuture<Void> handed, CompletableFuture<Void> delivered) {
+        private void skip() {
+            handed.complete(null);
+            delivered.complete(null);
+        }
+
+        private void fail(Throwable e) {
+            handed.completeExceptionally(e);
+            delivered.completeExceptionally(e);
+        }
+    }
+
+    private record Article(long postId, String url, String text, Progress progress) {
+    }
+
+    private record Parsed(Page page, Progress progress) {
+    }
+
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore fetchPermits;
+
+    private BlockingQueue<Article> nlpQueue;
+    private ExecutorService nlpExecutor;
+
+    private BlockingQueue<Parsed> publishQueue;
+    private ExecutorService publishExecutor;
+
+    private static final long SHUTDOWN_WAIT_MS = 1_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineTools.class);
+
+    @PostConstruct
+    public void init() {
+        int fetchConcurrency = Math.max(1, parserProperty.getFetchConcurrency());
+        int nlpThreads = parserProperty.getNlpThreads() > 0
+                ? parserProperty.getNlpThreads()
+                : Runtime.getRuntime().availableProcessors();
+
+        fetchPermits = new Semaphore(fetchConcurrency);
+        nlpQueue = new ArrayBlockingQueue<>(Math.max(1, parserProperty.getNlpQueueCapacity()));
+        publishQueue = new ArrayBlockingQueue<>(Math.max(1, parserProperty.getPublishQueueCapacity()));
+
+        nlpExecutor = Executors.newFixedThreadPool(nlpThreads, Thread.ofPlatform().name("nlp-", 0).daemon().factory());
+        for (int i = 0; i < nlpThreads; i++) nlpExecutor.execute(this::nlpLoop);
+
+        publishExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("pipeline-publish").factory());
+        publishExecutor.execute(this::publishLoop);
+
+        Gauge.builder("parser.pipeline.inflight", fetchPermits, p -> fetchConcurrency - p.availablePermits())
+                .description("Загрузок статей в работе")
+                .tag("stage", "fetch")
+                .register(meterRegistry);
+        Gauge.builder("parser.pipeline.queue", nlpQueue, BlockingQueue::size)
+                .description("Статей в очереди этапа")
+                .tag("stage", "nlp")
+                .register(meterRegistry);
+        Gauge.builder("parser.pipeline.queue", publishQueue, BlockingQueue::size)
+                .description("Статей в очереди этапа")
+                .tag("stage", "publish")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить статью в обработку. Блокирует поток, пока заняты все fetchConcurrency загрузок.
+     */
+    public Progress submit(long postId, String url) throws InterruptedException {
+        Progress progress = new Progress(new CompletableFuture<>(), new CompletableFuture<>());
+
+        fetchPermits.acquire();
+        try {
+            fetchExecutor.execute(() -> fetch(postId, url, progress));
+        } catch (RuntimeException e) {
+            fetchPermits.release();
+            throw e;
+        }
+        return progress;
+    }
+
+    private void fetch(long postId, String url, Progress progress) {
+        try {
+            Optional<String> text = parserTools.fetchArticleText(postId, url);
+            if (text.isEmpty()) {
+                progress.skip();
+                return;
+            }
+
+            // Разрешение на загрузку держится, пока текст не принят в очередь NLP
+            nlpQueue.put(new Article(postId, url, text.get(), progress));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.fail(e);
+        } catch (IOException | RuntimeException e) {
+            progress.fail(e);
+        } finally {
+            fetchPermits.release();
+        }
+    }
+
+    private void nlpLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Article item = nlpQueue.take();
+                Optional<Page> page;
+                try {
+                    page = parserTools.parseArticleText(item.postId(), item.url(), item.text());
+                } catch (RuntimeException e) {
+                    item.progress().fail(e);
+                    continue;
+                }
+
+                if (page.isEmpty()) {
+                    item.progress().skip();
+                    continue;
+                }
+
+                try {
+                    publishQueue.put(new Parsed(page.get(), item.progress()));
+                } catch (InterruptedException e) {
+                    item.progress().fail(e);
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publishLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Parsed item = publishQueue.take();
+                CompletableFuture<Void> delivered;
+                try {
+                    delivered = publishTools.submit(item.page());
+                } catch (RuntimeException e) {
+                    logger.error("Ошибка отправки статьи {}: {}", item.page().url(), e.getMessage());
+                    item.progress().fail(e);
+                    continue;
+                }
+
+                item.progress().handed().complete(null);
+                delivered.whenComplete((v, e) -> {
+                    if (e == null) item.progress().delivered().complete(null);
+                    else item.progress().delivered().completeExceptionally(e);
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Этапы останавливаются, а статьи, оставшиеся в очередях, завершаются ошибкой: ждущие их потоки
+     * (RabbitTools, WorkTools) не зависают, а статьи уйдут в следующем цикле.
+     */
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        nlpExecutor.shutdownNow();
+        publishExecutor.shutdownNow();
+
+        try {
+            // Загрузка, успевшая положить статью в очередь после остановки, попадёт в разбор очередей ниже
+            for (ExecutorService executor : List.of(fetchExecutor, nlpExecutor, publishExecutor)) {
+                executor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        CancellationException stopped = new CancellationException("Обработка статей остановлена");
+        List<Article> articles = new ArrayList<>();
+        nlpQueue.drainTo(articles);
+        articles.forEach(article -> article.progress().fail(stopped));
+
+        List<Parsed> parsed = new ArrayList<>();
+        publishQueue.drainTo(parsed);
+        parsed.forEach(item -> item.progress().fail(stopped));
+
+        if (!articles.isEmpty() || !parsed.isEmpty()) {
+            logger.warn("Остановка: не обработано статей {}", articles.size() + parsed.size());
+        }
+    }
+}
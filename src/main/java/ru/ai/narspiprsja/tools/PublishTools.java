@@ -0,0 +1,421 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.body.PageReq;
+import ru.ai.narspiprsja.config.RabbitConfig;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отправка статей в шлюз пачками по объёму: пачка уходит, когда оценка её JSON дорастает до
+ * publishMaxBytes или когда первая статья ждёт дольше publishLingerMs.
+ * Каждая пачка ждёт publisher confirm; одновременно неподтверждённых пачек не больше publishWindow.
+ * Пачка без подтверждения повторяется до publishAttempts раз, затем пишется в publishSpillFile
+ * и отправляется заново раз в publishReplayMs (в том числе после перезапуска).
+ * Статьи подтверждённой пачки запоминаются в DedupTools. Future статьи из submit завершается, когда её
+ * пачка подтверждена или записана в буфер (оттуда она уйдёт сама), и исключением — если пачка потеряна.
+ */
+@Service
+@RequiredArgsConstructor
+public class PublishTools {
+    private final ParserProperty parserProperty;
+    private final DedupTools dedupTools;
+
+    private final RabbitConfig rabbitConfig;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock batchLock = new ReentrantLock();
+    private List<Page> batch = new ArrayList<>();
+    private List<CompletableFuture<Void>> batchDelivered = new ArrayList<>();
+    private long batchBytes;
+    private long batchStarted;
+
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // Повтор буфера идёт, пока не подтверждены все его пачки; следующий ждёт его конца
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    // Пачки, ждущие повтора; при остановке они сразу пишутся в буфер
+    private final Map<UUID, Outgoing> retries = new ConcurrentHashMap<>();
+
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    private DistributionSummary batchPagesSummary;
+    private DistributionSummary batchBytesSummary;
+    private final Map<String, Timer> confirmTimers = new ConcurrentHashMap<>();
+
+    private Semaphore window;
+    private ScheduledExecutorService scheduler;
+
+    // {"postId":,"url":"","chunks":[]} и число postId
+    private static final int PAGE_OVERHEAD = 52;
+
+    private record Outgoing(List<Page> pages, List<CompletableFuture<Void>> delivered) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(PublishTools.class);
+
+    @PostConstruct
+    public void init() {
+        batchPagesSummary = DistributionSummary.builder("parser.publish.batch.pages")
+                .description("Статей в отправленной пачке")
+                .register(meterRegistry);
+        batchBytesSummary = DistributionSummary.builder("parser.publish.batch.bytes")
+                .description("Оценка объёма пачки в JSON до кодирования и сжатия")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("parser.publish.confirmed", confirmed, AtomicLong::get)
+                .description("Пачек, подтверждённых брокером")
+                .register(meterRegistry);
+        FunctionCounter.builder("parser.publish.spilled", spilled, AtomicLong::get)
+                .description("Пачек, записанных в буфер отправки")
+                .register(meterRegistry);
+
+        window = new Semaphore(Math.max(1, parserProperty.getPublishWindow()));
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("publish").factory());
+
+        long linger = Math.max(1, parserProperty.getPublishLingerMs());
+        scheduler.scheduleWithFixedDelay(this::flushLingering, linger, Math.max(1, linger / 2), TimeUnit.MILLISECONDS);
+
+        if (spillFile() != null) {
+            scheduler.scheduleWithFixedDelay(() -> Thread.startVirtualThread(this::replaySpill),
+                    0, Math.max(1, parserProperty.getPublishReplayMs()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Добавить статью в текущую пачку. Может заблокировать поток, пока окно неподтверждённых пачек заполнено.
+     *
+     * @return future доставки статьи брокеру
+     */
+    public CompletableFuture<Void> submit(Page page) {
+        long size = sizeOf(page);
+        long max = parserProperty.getPublishMaxBytes();
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        List<Outgoing> ready = new ArrayList<>(2);
+
+        batchLock.lock();
+        try {
+            if (!batch.isEmpty() && batchBytes + size > max) ready.add(drain());
+            if (batch.isEmpty()) batchStarted = System.nanoTime();
+
+            batch.add(page);
+            batchDelivered.add(delivered);
+            batchBytes += size;
+
+            // Статья больше бюджета уходит отдельным сообщением
+            if (batchBytes >= max) ready.add(drain());
+        } finally {
+            batchLock.unlock();
+        }
+
+        ready.forEach(this::publish);
+        return delivered;
+    }
+
+    public void flush() {
+        Outgoing pages;
+        batchLock.lock();
+        try {
+            pages = batch.isEmpty() ? null : drain();
+        } finally {
+            batchLock.unlock();
+        }
+
+        if (pages != null) publish(pages);
+    }
+
+    private void flushLingering() {
+        boolean due;
+        batchLock.lock();
+        try {
+            due = !batch.isEmpty() && System.nanoTime() - batchStarted
+                    >= TimeUnit.MILLISECONDS.toNanos(parserProperty.getPublishLingerMs());
+        } finally {
+            batchLock.unlock();
+        }
+
+        // Отправка может ждать окно, поэтому не на потоке планировщика
+        if (due) Thread.startVirtualThread(this::flush);
+    }
+
+    private Outgoing drain() {
+        batchPagesSummary.record(batch.size());
+        batchBytesSummary.record(batchBytes);
+
+        Outgoing outgoing = new Outgoing(batch, batchDelivered);
+        batch = new ArrayList<>();
+        batchDelivered = new ArrayList<>();
+        batchBytes = 0;
+        return outgoing;
+    }
+
+    private void publish(Outgoing outgoing) {
+        send(new PageReq(UUID.randomUUID(), outgoing.pages()), outgoing.delivered(), 1);
+    }
+
+    private void send(PageReq req, List<CompletableFuture<Void>> delivered, int attempt) {
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            spill(req, delivered);
+            return;
+        }
+
+        logger.info("[UUID: {}] Send pages size: {}, attempt: {}", req.uuid(), req.pages().size(), attempt);
+
+        long start = System.nanoTime();
+        CorrelationData correlation = new CorrelationData(req.uuid().toString());
+        try {
+            rabbitTemplate.convertAndSend(
+                    rabbitConfig.getGtwExc(),
+                    rabbitConfig.getPageReqRoutingKey(),
+                    req,
+                    correlation);
+        } catch (AmqpException e) {
+            window.release();
+            retryOrSpill(req, delivered, attempt, e.getMessage());
+            return;
+        }
+
+        correlation.getFuture()
+                .orTimeout(parserProperty.getPublishConfirmTimeoutMs(), TimeUnit.MILLISECONDS)
+                .whenComplete((confirm, e) -> {
+                    window.release();
+                    confirmTimer(e != null ? "timeout" : confirm.isAck() ? "ack" : "nack")
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                    if (e == null && confirm.isAck()) {
+                        confirmed.incrementAndGet();
+                        dedupTools.remember(urls(req));
+                        delivered.forEach(future -> future.complete(null));
+                        return;
+                    }
+
+                    retryOrSpill(req, delivered, attempt, e != null ? "confirm timeout" : confirm.getReason());
+                });
+    }
+
+    private Timer confirmTimer(String outcome) {
+        return confirmTimers.computeIfAbsent(outcome, o -> Timer.builder("parser.publish.confirm")
+                .description("Ожидание publisher confirm для пачки")
+                .tag("outcome", o)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private void retryOrSpill(PageReq req, List<CompletableFuture<Void>> delivered, int attempt, String reason) {
+        if (attempt < parserProperty.getPublishAttempts() && !scheduler.isShutdown()) {
+            logger.warn("[UUID: {}] Pages are not confirmed ({}), retry", req.uuid(), reason);
+            retries.put(req.uuid(), new Outgoing(req.pages(), delivered));
+            try {
+                scheduler.schedule(() -> {
+                    if (retries.remove(req.uuid()) != null) {
+                        Thread.startVirtualThread(() -> send(req, delivered, attempt + 1));
+                    }
+                }, parserProperty.getPublishBackoffMs() * attempt, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Остановка приложения между проверкой и планированием
+                retries.remove(req.uuid());
+            }
+        }
+
+        logger.error("[UUID: {}] Pages are not confirmed ({})", req.uuid(), reason);
+        spill(req, delivered);
+    }
+
+    private void spill(PageReq req, List<CompletableFuture<Void>> delivered) {
+        Path file = spillFile();
+        if (file == null) {
+            // Буфера нет — неотправленные статьи не должны считаться дубликатами в следующем цикле
+            lost(req, delivered, new AmqpException("Pages are not confirmed: " + req.uuid()));
+            return;
+        }
+
+        spillLock.lock();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(objectMapper.writeValueAsString(req));
+                writer.newLine();
+            }
+            spilled.incrementAndGet();
+            logger.warn("[UUID: {}] Pages spilled to {}", req.uuid(), file);
+        } catch (IOException e) {
+            logger.error("[UUID: {}] Не удалось записать буфер отправки: {}", req.uuid(), e.getMessage());
+            lost(req, delivered, e);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+
+        // Пачка в буфере уйдёт при очередном повторе
+        delivered.forEach(future -> future.complete(null));
+    }
+
+    private void lost(PageReq req, List<CompletableFuture<Void>> delivered, Exception cause) {
+        dedupTools.forget(urls(req));
+        delivered.forEach(future -> future.completeExceptionally(cause));
+    }
+
+    // Файл буфера забирается целиком; что снова не уйдёт, допишется в новый файл. Забранный файл
+    // удаляется, только когда каждая его пачка подтверждена или снова записана в буфер: до того
+    // остановка процесса не теряет статьи, а повтор после перезапуска начнётся с него же
+    private void replaySpill() {
+        if (!replaying.compareAndSet(false, true)) return;
+
+        Path file = spillFile();
+        Path replay = file.resolveSibling(file.getFileName() + ".replay");
+
+        List<String> lines;
+        spillLock.lock();
+        try {
+            if (!Files.exists(replay)) {
+                if (!Files.exists(file)) {
+                    replaying.set(false);
+                    return;
+                }
+                Files.move(file, replay, StandardCopyOption.ATOMIC_MOVE);
+            }
+            lines = Files.readAllLines(replay, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Не удалось прочитать буфер отправки {}: {}", file, e.getMessage());
+            replaying.set(false);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+
+        List<CompletableFuture<Void>> replayed = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            if (line.isBlank()) continue;
+            try {
+                CompletableFuture<Void> delivered = new CompletableFuture<>();
+                replayed.add(delivered);
+                send(objectMapper.readValue(line, PageReq.class), List.of(delivered), 1);
+            } catch (JsonProcessingException e) {
+                replayed.removeLast();
+                logger.error("Повреждённая запись буфера отправки: {}", e.getOriginalMessage());
+            }
+        }
+
+        CompletableFuture.allOf(replayed.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> {
+            try {
+                // Пачка потеряна (буфер не записался) — файл остаётся для следующего повтора
+                if (e == null) deleteReplay(replay);
+            } finally {
+                replaying.set(false);
+            }
+        });
+    }
+
+    private void deleteReplay(Path replay) {
+        spillLock.lock();
+        try {
+            Files.deleteIfExists(replay);
+        } catch (IOException e) {
+            logger.error("Не удалось удалить повторённый буфер отправки {}: {}", replay, e.getMessage());
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private static List<String> urls(PageReq req) {
+        return req.pages().stream().map(Page::url).toList();
+    }
+
+    private Path spillFile() {
+        String file = parserProperty.getPublishSpillFile();
+        return file == null || file.isBlank() ? null : Path.of(file);
+    }
+
+    // Оценка объёма статьи в JSON без сериализации: строки в UTF-8 плюс кавычки, запятые и имена полей
+    private static long sizeOf(Page page) {
+        long size = PAGE_OVERHEAD + utf8Length(page.url());
+        for (String chunk : page.chunks()) size += utf8Length(chunk) + 3;
+        return size;
+    }
+
+    private static long utf8Length(String s) {
+        if (s == null) return 4;
+
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) length += c == '"' || c == '\\' || c < 0x20 ? 2 : 1;
+            else if (c < 0x800) length += 2;
+            else length += Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    public long getConfirmed() {
+        return confirmed.get();
+    }
+
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+
+        // Дождаться подтверждений уже отправленных пачек
+        int permits = Math.max(1, parserProperty.getPublishWindow());
+        try {
+            if (window.tryAcquire(permits, parserProperty.getPublishConfirmTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                window.release(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        scheduler.shutdownNow();
+        for (UUID uuid : List.copyOf(retries.keySet())) {
+            Outgoing retry = retries.remove(uuid);
+            if (retry != null) spill(new PageReq(uuid, retry.pages()), retry.delivered());
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package ru.ai.narspiprsja.tools;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpReplyTimeoutException;
+import org.springframework.amqp.rabbit.AsyncRabbitTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import ru.ai.narspiprsja.body.PageReq;
 import ru.ai.narspiprsja.body.UrlsReq;
 import ru.ai.narspiprsja.body.UrlsRes;
 import ru.ai.narspiprsja.config.RabbitConfig;
@@ -18,69 +23,142 @@ import ru.ai.narspiprsja.property.ParserProperty;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
 public class RabbitTools {
     private final ParserTools parserTools;
+    private final MarkTools markTools;
+    private final DedupTools dedupTools;
+    private final PublishTools publishTools;
+    private final PipelineTools pipelineTools;
+    private final WorkTools workTools;
+    private final LeaseTools leaseTools;
     private final ParserProperty parserProperty;
 
     private final RabbitConfig rabbitConfig;
-    private final RabbitTemplate rabbitTemplate;
+    private final AsyncRabbitTemplate asyncRabbitTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Обходы частей и продолжения ответов шлюза; статьи обрабатывает PipelineTools
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, AtomicBoolean> partRunning = new ConcurrentHashMap<>();
+    private final Map<String, Timer> gatewayTimers = new ConcurrentHashMap<>();
+    private Semaphore partLimit;
 
     private static final Logger logger = LoggerFactory.getLogger(RabbitTools.class);
 
-    public Optional<UrlsRes> urlsSendAndReceive(UrlsReq req) {
-        logger.info("[UUID: {}] Send urls size: {}", req.uuid(), req.data().size());
+    @PostConstruct
+    public void init() {
+        partLimit = new Semaphore(Math.max(1, parserProperty.getPartConcurrency()));
+    }
+
+    /**
+     * Запрос к шлюзу без блокировки потока: ответ приходит через direct reply-to
+     * AsyncRabbitTemplate. По таймауту запрос повторяется с тем же uuid до gatewayAttempts раз,
+     * пауза перед повтором растёт на gatewayBackoffMs.
+     */
+    public CompletableFuture<Optional<UrlsRes>> urlsSendAndReceive(UrlsReq req) {
+        return urlsExchange(req, 1);
+    }
+
+    private CompletableFuture<Optional<UrlsRes>> urlsExchange(UrlsReq req, int attempt) {
+        logger.info("[UUID: {}] Send urls size: {}, attempt: {}", req.uuid(), req.data().size(), attempt);
 
+        long start = System.nanoTime();
+        CompletableFuture<UrlsRes> reply;
         try {
-            UrlsRes res = rabbitTemplate.convertSendAndReceiveAsType(
+            reply = asyncRabbitTemplate.convertSendAndReceiveAsType(
                     rabbitConfig.getGtwExc(),
                     rabbitConfig.getUrlsReqRoutingKey(),
                     req,
                     new ParameterizedTypeReference<>() {}
             );
+        } catch (AmqpException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
 
-            if (res == null) {
-                throw new RuntimeException("Response is null");
-            }
+        return reply.handle((res, e) -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            gatewayTimer(cause).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
-            if (!req.uuid().equals(res.uuid())) {
-                throw new RuntimeException("Response does not match uuid");
+            if (e == null) {
+                return CompletableFuture.completedFuture(checkUrlsRes(req, res));
             }
 
-            if (res.sites() == null || res.sites().isEmpty()) {
-                throw new RuntimeException("Response answer is empty");
+            if (cause instanceof AmqpReplyTimeoutException && attempt < parserProperty.getGatewayAttempts()) {
+                logger.warn("[UUID: {}] Urls response timeout, retry", req.uuid());
+
+                Executor delayed = CompletableFuture.delayedExecutor(
+                        parserProperty.getGatewayBackoffMs() * attempt, TimeUnit.MILLISECONDS, fetchExecutor);
+                return CompletableFuture.supplyAsync(() -> urlsExchange(req, attempt + 1), delayed)
+                        .thenCompose(next -> next);
             }
 
-            return Optional.of(res);
-        }
-        catch (Exception e) {
-            logger.error("[UUID: {}] Urls response exception: {}", req.uuid(), e.getMessage());
+            logger.error("[UUID: {}] Urls response exception: {}", req.uuid(), cause.getMessage());
+            return CompletableFuture.completedFuture(Optional.<UrlsRes>empty());
+        }).thenCompose(next -> next);
+    }
+
+    // Время одной попытки запроса к шлюзу; outcome=timeout — ответ не пришёл за replyTimeout
+    private Timer gatewayTimer(Throwable cause) {
+        String outcome = cause == null ? "ok" : cause instanceof AmqpReplyTimeoutException ? "timeout" : "error";
+        return gatewayTimers.computeIfAbsent(outcome, o -> Timer.builder("parser.gateway.reply")
+                .description("Ожидание ответа шлюза на ссылки")
+                .tag("outcome", o)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
 
+    private Optional<UrlsRes> checkUrlsRes(UrlsReq req, UrlsRes res) {
+        if (res == null) {
+            logger.error("[UUID: {}] Urls response exception: Response is null", req.uuid());
             return Optional.empty();
         }
-    }
 
-    public void pageSend(List<Page> pages) {
-        PageReq req = new PageReq(
-                UUID.randomUUID(),
-                pages
-        );
+        if (!req.uuid().equals(res.uuid())) {
+            logger.error("[UUID: {}] Urls response exception: Response does not match uuid", req.uuid());
+            return Optional.empty();
+        }
 
-        logger.info("[UUID: {}] Send pages size: {}", req.uuid(), req.pages().size());
+        if (res.sites() == null || res.sites().isEmpty()) {
+            logger.info("[UUID: {}] Response answer is empty", req.uuid());
+            return Optional.of(new UrlsRes(res.uuid(), List.of()));
+        }
 
-        rabbitTemplate.convertAndSend(
-                rabbitConfig.getGtwExc(),
-                rabbitConfig.getPageReqRoutingKey(),
-                req);
+        return Optional.of(res);
     }
 
-    public void parseUrls(String part) {
-        List<Url> urls = parserTools.parseNewsPage(part);
-        if (urls.isEmpty()) { return; }
+    /**
+     * Обход ленты части идёт в текущем потоке, а ответ шлюза и загрузка статей — асинхронно:
+     * возвращённый future завершается, когда статьи части отправлены.
+     * При dispatch=queue часть обходит только экземпляр, держащий её lease, а статьи уходят задачами воркерам.
+     * Отметка части сдвигается, только когда все её статьи дошли до брокера (статьёй или задачей);
+     * иначе следующий обход пройдёт те же ссылки, и уже отправленные статьи отсеет DedupTools.
+     */
+    public CompletableFuture<Void> parseUrls(String part) {
+        if (parserProperty.isQueueDispatch() && !leaseTools.hold(part)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Лента прочитана не до конца — цикл пропускается, отметка остаётся на месте
+        List<Url> urls = parserTools.parseNewsPage(part).orElse(List.of());
+        if (urls.isEmpty()) { return CompletableFuture.completedFuture(null); }
 
         UrlsReq req = new UrlsReq(
                 UUID.randomUUID(),
@@ -88,32 +166,130 @@ public class RabbitTools {
                 urls
         );
 
-        Optional<UrlsRes> res = urlsSendAndReceive(req);
+        return urlsSendAndReceive(req).thenAcceptAsync(res -> {
+            if (res.isEmpty()) {return;}
 
-        if (res.isEmpty() || res.get().sites().isEmpty()) {return;}
+            List<Site> sites = res.get().sites();
+            if (parserProperty.isQueueDispatch()) {
+                int sent = workTools.dispatch(req, sites);
+                sites = sites.subList(sent, sites.size());
+            }
 
-        List<Page> pages = new ArrayList<>();
+            if (sites.isEmpty() || parseSites(req, sites)) {
+                // Статьи части дошли до брокера — следующий обход остановится на этих ссылках
+                markTools.advance(part, urls);
+            } else {
+                logger.warn("[UUID: {}] Not all articles are delivered, mark of {} is kept", req.uuid(), part);
+            }
+        }, fetchExecutor);
+    }
 
-        for (Site site: res.get().sites()) {
-            Optional<Page> page = parserTools.parseArticlePage(site.postId(), site.source());
+    /**
+     * @return true, если все статьи подтверждены брокером или записаны в буфер отправки
+     */
+    private boolean parseSites(UrlsReq req, List<Site> sites) {
+        List<PipelineTools.Progress> articles = new ArrayList<>();
+        boolean delivered = true;
+        try {
+            for (Site site: sites) {
+                articles.add(pipelineTools.submit(site.postId(), site.source()));
+            }
 
-            page.ifPresent(pages::add);
+            // Хвост части не ждёт publishLingerMs: сначала все статьи ложатся в пачки
+            for (PipelineTools.Progress article : articles) {
+                try {
+                    article.handed().get();
+                } catch (ExecutionException | CancellationException e) {
+                    // Причина придёт и в delivered
+                }
+            }
+            publishTools.flush();
 
-            if (pages.size() >= 20) {
-                pageSend(pages);
-                pages.clear();
+            for (PipelineTools.Progress article : articles) {
+                try {
+                    article.delivered().get();
+                } catch (ExecutionException e) {
+                    delivered = false;
+                    logger.error("[UUID: {}] Article parse exception: {}", req.uuid(), e.getCause().getMessage());
+                } catch (CancellationException e) {
+                    delivered = false;
+                    logger.error("[UUID: {}] Article parse cancelled", req.uuid());
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("[UUID: {}] Article parse interrupted", req.uuid());
+            return false;
+        }
+
+        logger.info("[UUID: {}] Dedup hits: {}, misses: {}, size: {}",
+                req.uuid(), dedupTools.getHits(), dedupTools.getMisses(), dedupTools.size());
+        return delivered;
+    }
+
+    /**
+     * Запуск обхода части в параллельном режиме. Если предыдущий обход этой части
+     * ещё не закончился, запуск пропускается; общее число одновременных обходов
+     * ограничено partConcurrency.
+     */
+    public void submitPart(String part) {
+        AtomicBoolean running = partRunning.computeIfAbsent(part, p -> new AtomicBoolean());
+        if (!running.compareAndSet(false, true)) {
+            logger.debug("[{}] Previous crawl is still running, skip", part);
+            return;
         }
 
-        if (!pages.isEmpty()) {
-            pageSend(pages);
+        try {
+            fetchExecutor.execute(() -> {
+                CompletableFuture<Void> crawl;
+                try {
+                    // Лимит держится только на обход ленты: пока шлюз отвечает, обходятся другие части
+                    partLimit.acquire();
+                    try {
+                        crawl = parseUrls(part);
+                    } finally {
+                        partLimit.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running.set(false);
+                    return;
+                } catch (Exception e) {
+                    logger.error("[{}] Crawl exception: {}", part, e.getMessage());
+                    running.set(false);
+                    return;
+                }
+
+                crawl.whenComplete((v, e) -> {
+                    if (e != null) logger.error("[{}] Crawl exception: {}", part, e.getMessage());
+                    running.set(false);
+                });
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
         }
     }
 
     @Scheduled(fixedDelay = 10000)
     public void task() {
+        // В параллельном режиме части запускает ScheduleConfig
+        if (parserProperty.isParallel() || !parserProperty.isCrawler()) return;
+
+        // Пока шлюз отвечает по одной части, обходится лента следующей
+        List<CompletableFuture<Void>> crawls = new ArrayList<>();
         for (String part: parserProperty.getParts()) {
-            parseUrls(part);
+            crawls.add(parseUrls(part).exceptionally(e -> {
+                logger.error("[{}] Crawl exception: {}", part, e.getMessage());
+                return null;
+            }));
         }
+
+        CompletableFuture.allOf(crawls.toArray(CompletableFuture[]::new)).join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
     }
 }
@@ -0,0 +1,172 @@
+package ru.ai.narspiprsja.tools;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Вежливость к хостам: у каждого хоста свой token bucket, общий для лент и статей.
+ * Скорость подстраивается по AIMD: после быстрого успешного ответа растёт на rateIncrease,
+ * после 429/5xx, ошибки соединения или ответа медленнее rateLatencyMs умножается на rateDecrease.
+ * Retry-After ставит хост на паузу целиком, но не дольше rateRetryAfterMaxMs: хост не может остановить обход надолго.
+ * Ожидание — обычный Thread.sleep вне блокировки, на виртуальном потоке он не занимает носитель;
+ * ParserTools ждёт здесь до того, как занять разрешение хоста.
+ */
+@Service
+@RequiredArgsConstructor
+public class RateTools {
+    private final ParserProperty parserProperty;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(RateTools.class);
+
+    private final class Bucket {
+        // ReentrantLock, а не synchronized: в Java 21 synchronized прикалывает виртуальный поток к носителю
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private double rate = parserProperty.getRateInitial();
+        private double tokens = parserProperty.getRateBurst();
+        private long refilled = System.nanoTime();
+        private long pausedUntil;
+
+        // Сколько ждать до своего запроса; токен резервируется сразу, поэтому баланс бывает отрицательным
+        long reserve() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                tokens = Math.min(parserProperty.getRateBurst(), tokens + (now - refilled) / 1e9 * rate);
+                refilled = now;
+                tokens -= 1;
+
+                long wait = tokens < 0 ? (long) (-tokens / rate * 1e9) : 0;
+                return Math.max(wait, pausedUntil - now);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Токен без ожидания: false, если его пришлось бы ждать или хост на паузе
+        boolean tryReserve() {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                tokens = Math.min(parserProperty.getRateBurst(), tokens + (now - refilled) / 1e9 * rate);
+                refilled = now;
+                if (tokens < 1 || pausedUntil > now) return false;
+
+                tokens -= 1;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void increase() {
+            lock.lock();
+            try {
+                rate = Math.min(parserProperty.getRateMax(), rate + parserProperty.getRateIncrease());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void decrease(long pauseNanos) {
+            lock.lock();
+            try {
+                rate = Math.max(parserProperty.getRateMin(), rate * parserProperty.getRateDecrease());
+                if (pauseNanos > 0) pausedUntil = Math.max(pausedUntil, System.nanoTime() + pauseNanos);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        double rate() {
+            lock.lock();
+            try {
+                return rate;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Bucket bucket(String url) {
+        String host = URI.create(url).getHost();
+        return buckets.computeIfAbsent(host == null ? "" : host, h -> new Bucket());
+    }
+
+    /**
+     * Дожидается разрешения на запрос к хосту ссылки.
+     */
+    public void acquire(String url) throws InterruptedException {
+        long wait = bucket(url).reserve();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * Разрешение на запрос к хосту, только если его не нужно ждать (дублирующий запрос HedgeTools).
+     */
+    public boolean tryAcquire(String url) {
+        return bucket(url).tryReserve();
+    }
+
+    /**
+     * Отчёт о полученном ответе: код, время ответа и значение Retry-After (может быть null).
+     */
+    public void onResponse(String url, int status, long latencyNanos, String retryAfter) {
+        Bucket bucket = bucket(url);
+
+        if (status == 429 || status >= 500) {
+            long cap = TimeUnit.MILLISECONDS.toNanos(parserProperty.getRateRetryAfterMaxMs());
+            bucket.decrease(Math.min(cap, retryAfterNanos(retryAfter)));
+            logger.warn("Хост отвечает {}, скорость снижена до {} запр/с: {}",
+                    status, "%.2f".formatted(bucket.rate()), url);
+        } else if (latencyNanos > TimeUnit.MILLISECONDS.toNanos(parserProperty.getRateLatencyMs())) {
+            bucket.decrease(0);
+        } else {
+            bucket.increase();
+        }
+    }
+
+    /**
+     * Отчёт о неудавшемся запросе (таймаут, обрыв соединения).
+     */
+    public void onFailure(String url) {
+        bucket(url).decrease(0);
+    }
+
+    public double getRate(String url) {
+        return bucket(url).rate();
+    }
+
+    // Retry-After бывает числом секунд или HTTP-датой
+    static long retryAfterNanos(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) return 0;
+
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException ignored) {
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
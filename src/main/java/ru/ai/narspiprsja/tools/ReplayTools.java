@@ -0,0 +1,137 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.model.Archived;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Повторный разбор архива страниц (см. ArchiveTools) без обращения к сайтам: после смены правил
+ * OpenConfig, abbreviations.txt или настроек чанков статьи пересобираются из сохранённого HTML
+ * и отправляются через PublishTools. Сегменты обрабатываются параллельно на ForkJoinPool.
+ * Из нескольких загрузок одной ссылки разбирается только последняя.
+ * Включается parse.config.replay=true; обход лент при этом обычно выключают (crawler=false).
+ */
+@Service
+@RequiredArgsConstructor
+public class ReplayTools {
+    private final ParserProperty parserProperty;
+
+    private final ArchiveTools archiveTools;
+    private final ParserTools parserTools;
+    private final PublishTools publishTools;
+    private final MeterRegistry meterRegistry;
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayTools.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!parserProperty.isReplay()) return;
+
+        Thread.ofVirtual().name("replay").start(() -> {
+            try {
+                replay();
+            } catch (IOException e) {
+                logger.error("Не удалось разобрать архив: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * @return сколько статей отправлено
+     */
+    public long replay() throws IOException, InterruptedException {
+        List<Path> segments = archiveTools.segments();
+        int threads = parserProperty.getReplayThreads() > 0
+                ? parserProperty.getReplayThreads()
+                : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        AtomicLong records = new AtomicLong();
+        AtomicLong published = new AtomicLong();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // Первый проход: позиция последней записи каждой ссылки (номер сегмента и записи в нём)
+            Map<String, Long> latest = new ConcurrentHashMap<>();
+            forEachSegment(pool, segments, (position, entry) -> {
+                records.incrementAndGet();
+                latest.merge(entry.url(), position, Math::max);
+            });
+
+            forEachSegment(pool, segments, (position, entry) -> {
+                if (latest.get(entry.url()) != position) return;
+                if (replay(entry)) published.incrementAndGet();
+            });
+        } finally {
+            pool.shutdown();
+        }
+
+        publishTools.flush();
+
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        meterRegistry.counter("parser.replay.pages").increment(published.get());
+        logger.info("Replay of {} segments done in {} ms: records {}, pages {}",
+                segments.size(), ms, records.get(), published.get());
+        return published.get();
+    }
+
+    private boolean replay(Archived entry) {
+        try {
+            Optional<String> text = parserTools.archivedText(entry);
+            if (text.isEmpty()) return false;
+
+            Page page = parserTools.chunkArticleText(entry.postId(), entry.url(), text.get());
+            publishTools.submit(page);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось разобрать архивную страницу {}: {}", entry.url(), e.getMessage());
+            return false;
+        }
+    }
+
+    private interface EntryAction {
+        void accept(long position, Archived entry);
+    }
+
+    // Сегмент читается одним потоком (поток zstd последовательный), сегменты — параллельно
+    private void forEachSegment(ForkJoinPool pool, List<Path> segments, EntryAction action)
+            throws IOException, InterruptedException {
+        try {
+            pool.submit(() -> IntStream.range(0, segments.size()).parallel().forEach(i -> {
+                long[] record = {0};
+                Consumer<Archived> consumer = entry -> action.accept(((long) i << 32) | record[0]++, entry);
+                try {
+                    ArchiveTools.read(segments.get(i), consumer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import com.rabbitmq.client.Channel;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+import ru.ai.narspiprsja.body.SiteTask;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.config.RabbitConfig;
+import ru.ai.narspiprsja.model.Site;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Загрузка статей через очередь prs.site.task.queue: экземпляр, обошедший ленту, отправляет
+ * каждую статью из ответа шлюза отдельной задачей, а экземпляры с parse.config.worker=true
+ * забирают задачи и прогоняют статьи через этапы PipelineTools.
+ * Задача подтверждается вручную и только после publisher confirm пачки со статьёй (или записи пачки
+ * в буфер отправки): отправитель уже сдвинул отметку части, и других копий статьи не будет.
+ * Поток потребителя ждёт лишь передачу статьи в пачку, а ack уходит из колбэка доставки, поэтому
+ * неподтверждённых задач на потребителя не больше workerPrefetch. Сбой загрузки или потеря пачки —
+ * nack без возврата в очередь, задача уходит в prs.site.task.dlq; падение воркера до ack вернёт задачу брокером.
+ */
+@Service
+@RequiredArgsConstructor
+public class WorkTools {
+    private final PipelineTools pipelineTools;
+
+    private final RabbitConfig rabbitConfig;
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkTools.class);
+
+    /**
+     * @return сколько задач ушло в очередь; остальные (после ошибки брокера) нужно загрузить на месте
+     */
+    public int dispatch(UrlsReq req, List<Site> sites) {
+        for (int i = 0; i < sites.size(); i++) {
+            try {
+                rabbitTemplate.convertAndSend(
+                        rabbitConfig.getPrsExc(),
+                        rabbitConfig.getSiteTaskRoutingKey(),
+                        new SiteTask(req.uuid(), req.type(), sites.get(i)));
+            } catch (RuntimeException e) {
+                logger.error("[UUID: {}] Site task send exception: {}", req.uuid(), e.getMessage());
+                count(req.type(), i);
+                return i;
+            }
+        }
+
+        count(req.type(), sites.size());
+        logger.info("[UUID: {}] Dispatched site tasks: {}", req.uuid(), sites.size());
+        return sites.size();
+    }
+
+    private void count(String part, int tasks) {
+        meterRegistry.counter("parser.work.dispatched", "part", part).increment(tasks);
+    }
+
+    @RabbitListener(queues = "#{rabbitConfig.siteTaskQueue}", containerFactory = "siteListenerFactory")
+    public void onSiteTask(SiteTask task, Channel channel, @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag)
+            throws InterruptedException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PipelineTools.Progress progress = pipelineTools.submit(task.site().postId(), task.site().source());
+
+        progress.delivered().whenComplete((v, e) -> {
+            sample.stop(meterRegistry.timer("parser.work.task", "part", String.valueOf(task.part())));
+            try {
+                if (e == null) {
+                    channel.basicAck(deliveryTag, false);
+                } else {
+                    logger.error("[UUID: {}] Site task failed: {}", task.uuid(), e.getMessage());
+                    channel.basicNack(deliveryTag, false, false);
+                }
+            } catch (IOException | RuntimeException ack) {
+                // Канал закрыт: неподтверждённую задачу брокер отдаст снова
+                logger.warn("[UUID: {}] Site task ack failed: {}", task.uuid(), ack.getMessage());
+            }
+        });
+
+        // Поток потребителя ждёт передачи статьи в пачку, NLP при этом идёт на пуле PipelineTools;
+        // ошибку обработает колбэк доставки
+        try {
+            progress.handed().get();
+        } catch (ExecutionException | CancellationException e) {
+            logger.debug("[UUID: {}] Site task not handed: {}", task.uuid(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ai.narspiprsja.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.SmartMessageConverter;
+import org.springframework.core.ParameterizedTypeReference;
+import ru.ai.narspiprsja.body.PageReq;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.model.Url;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCodecsTests {
+
+    private static final PageReq PAGES = new PageReq(UUID.randomUUID(), List.of(
+            new Page(1, "https://gov.cap.ru/press_center/news/1",
+                    List.of("Глава Чувашии провёл совещание.", "Работы начнутся 1 июня.")),
+            new Page(2, "https://gov.cap.ru/press_center/news/2",
+                    List.of("В Минздраве сообщили, что построено 12 ФАПов."))
+    ));
+
+    private static final UrlsReq URLS = new UrlsReq(UUID.randomUUID(), "gov", List.of(
+            new Url("https://gov.cap.ru/press_center/news/1", LocalDateTime.of(2025, 10, 1, 10, 15))
+    ));
+
+    private static <T> T roundTrip(String format, String compression, T value, ParameterizedTypeReference<T> type) {
+        Message message = MessageCodecs.converter(format).toMessage(value, new MessageProperties());
+
+        MessagePostProcessor compressor = MessageCodecs.compressor(compression);
+        if (compressor != null) message = compressor.postProcessMessage(message);
+
+        // Как от стороннего отправителя: без служебных заголовков Spring
+        MessageProperties wire = new MessageProperties();
+        wire.setContentType(message.getMessageProperties().getContentType());
+        wire.setContentEncoding(message.getMessageProperties().getContentEncoding());
+        message = MessageCodecs.decompressor().postProcessMessage(new Message(message.getBody(), wire));
+
+        // Получатель настроен на JSON и разбирает сообщение по content-type
+        SmartMessageConverter reader = MessageCodecs.converter("json");
+        @SuppressWarnings("unchecked")
+        T result = (T) reader.fromMessage(message, type);
+        return result;
+    }
+
+    @Test
+    void everyFormatAndCompressionRoundTrips() {
+        for (String format : List.of("json", "smile", "cbor")) {
+            for (String compression : List.of("none", "gzip", "deflate", "lz4", "zstd")) {
+                String name = format + "/" + compression;
+                assertEquals(PAGES, roundTrip(format, compression, PAGES, new ParameterizedTypeReference<>() {}), name);
+                assertEquals(URLS, roundTrip(format, compression, URLS, new ParameterizedTypeReference<>() {}), name);
+            }
+        }
+    }
+
+    @Test
+    void contentTypeFollowsFormat() {
+        assertTrue(contentType("json").startsWith(MessageCodecs.JSON));
+        assertEquals(MessageCodecs.SMILE, contentType("smile"));
+        assertEquals(MessageCodecs.CBOR, contentType("cbor"));
+    }
+
+    private static String contentType(String format) {
+        return MessageCodecs.converter(format).toMessage(PAGES, new MessageProperties())
+                .getMessageProperties().getContentType();
+    }
+}
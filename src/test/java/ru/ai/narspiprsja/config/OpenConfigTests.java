@@ -0,0 +1,59 @@
+package ru.ai.narspiprsja.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class OpenConfigTests {
+
+    /**
+     * Эталон снят с прежней реализации mask/unmask на цепочке регулярных выражений (Java 21).
+     */
+    record Golden(String input, String mask, String unmask) {
+    }
+
+    private static OpenConfig openConfig;
+    private static List<Golden> golden;
+
+    @BeforeAll
+    static void init() throws Exception {
+        openConfig = new OpenConfig();
+        ReflectionTestUtils.setField(openConfig, "abbreviationsFile", new ClassPathResource("abbreviations.txt"));
+        openConfig.loadAbbreviations();
+
+        try (InputStream in = new ClassPathResource("mask/golden.json").getInputStream()) {
+            golden = new ObjectMapper().readValue(in, new TypeReference<>() {});
+        }
+    }
+
+    @Test
+    void maskMatchesGolden() {
+        assertFalse(golden.isEmpty());
+        for (Golden g : golden) {
+            assertEquals(g.mask(), openConfig.mask(g.input()), g.input());
+        }
+    }
+
+    @Test
+    void unmaskMatchesGolden() {
+        for (Golden g : golden) {
+            assertEquals(g.unmask(), openConfig.unmask(g.mask()), g.input());
+        }
+    }
+
+    @Test
+    void emptyInput() {
+        assertEquals("", openConfig.mask(""));
+        assertEquals(null, openConfig.mask(null));
+        assertEquals(null, openConfig.unmask(null));
+    }
+}
@@ -0,0 +1,99 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ai.narspiprsja.model.Archived;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ArchiveToolsTests {
+
+    @TempDir
+    Path dir;
+
+    private static Fetched page(String url, String text) {
+        String html = "<html><body><div class=\"news_text\">" + text + "</div></body></html>";
+        return new Fetched(url, 200, Map.of("Content-Type", "text/html; charset=UTF-8"),
+                html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void truncatedTailIsSkipped() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setArchiveDir(dir.toString());
+        ArchiveTools archive = new ArchiveTools(prop);
+
+        archive.append(1, page("https://gov.cap.ru/1", "Первая"));
+        archive.append(2, page("https://gov.cap.ru/2", "Вторая"));
+        archive.shutdown();
+
+        Path segment = archive.segments().getFirst();
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 10));
+
+        List<Archived> entries = new ArrayList<>();
+        ArchiveTools.read(segment, entries::add);
+
+        assertEquals(1, entries.size());
+        assertEquals("https://gov.cap.ru/1", entries.getFirst().url());
+        assertEquals("UTF-8", entries.getFirst().charset());
+    }
+
+    @Test
+    void replayPublishesLatestFetchOfEachUrl() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setArchiveDir(dir.toString());
+        // Каждая запись в своём сегменте, чтобы сегменты разбирались параллельно
+        prop.setArchiveSegmentBytes(1);
+        prop.setReplayThreads(4);
+
+        ArchiveTools archive = new ArchiveTools(prop);
+        archive.append(1, page("https://gov.cap.ru/1", "Старый текст"));
+        archive.append(2, page("https://gov.cap.ru/2", "Вторая"));
+        archive.append(1, page("https://gov.cap.ru/1", "Новый текст"));
+        archive.shutdown();
+
+        ParserTools parserTools = new ParserTools(prop, null, null, null, null, null, null, null, archive, null) {
+            @Override
+            public Page chunkArticleText(long postId, String url, String text) {
+                return new Page(postId, url, List.of(text));
+            }
+        };
+        List<Page> published = Collections.synchronizedList(new ArrayList<>());
+        PublishTools publishTools = new PublishTools(prop, null, null, null, null, null) {
+            @Override
+            public CompletableFuture<Void> submit(Page page) {
+                published.add(page);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            public void flush() {
+            }
+        };
+
+        ReplayTools replay = new ReplayTools(prop, archive, parserTools, publishTools, new SimpleMeterRegistry());
+        assertEquals(2, replay.replay());
+
+        published.sort(Comparator.comparing(Page::url));
+        assertEquals(List.of(
+                new Page(1L, "https://gov.cap.ru/1", List.of("Новый текст")),
+                new Page(2L, "https://gov.cap.ru/2", List.of("Вторая"))
+        ), published);
+    }
+}
@@ -0,0 +1,166 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.body.UrlsRes;
+import ru.ai.narspiprsja.model.Site;
+import ru.ai.narspiprsja.model.Url;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackfillToolsTests {
+
+    private static final String PART = "gov";
+    private static final int PAGE_SIZE = 3;
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 1, 21);
+
+    private ParserProperty prop;
+
+    // Лента сайта от новых к старым; страница — PAGE_SIZE новостей
+    private final List<Url> listing = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    // Загруженные статьи и ссылки, на которых шлюз не отвечает
+    private final List<String> parsed = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<>());
+
+    @BeforeEach
+    void init(@TempDir Path dir) {
+        prop = new ParserProperty();
+        prop.setParts(List.of(PART));
+        prop.setBackfillFrom(FROM);
+        prop.setBackfillTo(TO);
+        prop.setBackfillShardPages(2);
+        prop.setBackfillShards(3);
+        prop.setBackfillFile(dir.resolve("backfill.json").toString());
+
+        for (int day = 20; day >= 1; day--) listing.add(news(FROM.plusDays(day - 1)));
+    }
+
+    private static Url news(LocalDate day) {
+        return new Url("https://gov.cap.ru/news/" + day, day.atTime(12, 0));
+    }
+
+    private BackfillTools backfillTools() {
+        ParserTools parserTools = new ParserTools(prop, null, null, null, null, null, null, null, null, null) {
+            @Override
+            public Optional<List<Url>> fetchNewsPage(String part, String dateStart, int page) {
+                fetches.incrementAndGet();
+                synchronized (listing) {
+                    int from = Math.min(listing.size(), (page - 1) * PAGE_SIZE);
+                    return Optional.of(List.copyOf(listing.subList(from, Math.min(listing.size(), from + PAGE_SIZE))));
+                }
+            }
+        };
+        PipelineTools pipelineTools = new PipelineTools(prop, parserTools, null, null) {
+            @Override
+            public Progress submit(long postId, String url) {
+                parsed.add(url);
+                CompletableFuture<Void> done = CompletableFuture.completedFuture(null);
+                return new Progress(done, done);
+            }
+        };
+        PublishTools publishTools = new PublishTools(prop, null, null, null, null, null) {
+            @Override
+            public void flush() {
+            }
+        };
+        RabbitTools rabbitTools = new RabbitTools(parserTools, null, null, publishTools, pipelineTools,
+                null, null, prop, null, null, new SimpleMeterRegistry()) {
+            @Override
+            public CompletableFuture<Optional<UrlsRes>> urlsSendAndReceive(UrlsReq req) {
+                if (req.data().stream().anyMatch(url -> failing.contains(url.link()))) {
+                    return CompletableFuture.completedFuture(Optional.empty());
+                }
+                List<Site> sites = new ArrayList<>();
+                for (Url url : req.data()) sites.add(new Site((long) sites.size(), url.link()));
+                return CompletableFuture.completedFuture(Optional.of(new UrlsRes(req.uuid(), sites)));
+            }
+        };
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return new BackfillTools(prop, parserTools, rabbitTools, pipelineTools, null, publishTools, mapper,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void listingIsWalkedOnceAndStopsAtItsEnd() {
+        BackfillTools backfillTools = backfillTools();
+        backfillTools.run();
+        backfillTools.shutdown();
+
+        assertEquals(20, parsed.size());
+        assertEquals(20, Set.copyOf(parsed).size());
+        // 7 страниц ленты, по странице на стык участков и пустые страницы за концом
+        assertTrue(fetches.get() <= 7 + 3 + 3, "fetches: " + fetches.get());
+    }
+
+    @Test
+    void resumeSurvivesShiftedPages() {
+        // Страница 4 (новости 10..12 по счёту) не доходит до шлюза
+        failing.add(listing.get(10).link());
+        BackfillTools first = backfillTools();
+        first.run();
+        first.shutdown();
+        assertFalse(parsed.contains(listing.get(10).link()));
+
+        // Пока догрузка стояла, на сайте вышли новые новости и сдвинули страницы
+        List<String> before = List.copyOf(parsed);
+        listing.add(0, news(TO.plusDays(1)));
+        listing.add(0, news(TO.plusDays(2)));
+        failing.clear();
+        parsed.clear();
+        fetches.set(0);
+
+        BackfillTools second = backfillTools();
+        second.run();
+        second.shutdown();
+
+        Set<String> all = new HashSet<>(before);
+        all.addAll(parsed);
+        assertEquals(20, all.size(), "ни одна новость диапазона не потеряна");
+        assertTrue(parsed.size() <= 4, "повторно только стык участков: " + parsed);
+        assertEquals(2, fetches.get(), "пройденные участки не обходятся заново");
+    }
+
+    @Test
+    void cursorSkipsOnlyProcessedNews() {
+        Url cursor = news(FROM.plusDays(5));
+
+        assertTrue(BackfillTools.passed(cursor, cursor));
+        assertTrue(BackfillTools.passed(news(FROM.plusDays(6)), cursor));
+        assertFalse(BackfillTools.passed(news(FROM.plusDays(4)), cursor));
+        assertFalse(BackfillTools.passed(news(FROM), null));
+    }
+
+    @Test
+    void rangeExcludesUpperBound() {
+        LocalDateTime boundary = TO.atStartOfDay();
+
+        assertFalse(BackfillTools.within(boundary, FROM, TO));
+        assertTrue(BackfillTools.within(boundary.minusMinutes(1), FROM, TO));
+        assertTrue(BackfillTools.within(FROM.atStartOfDay(), FROM, TO));
+    }
+}
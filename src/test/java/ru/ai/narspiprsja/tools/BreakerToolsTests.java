@@ -0,0 +1,54 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BreakerToolsTests {
+
+    private static final String URL = "https://gov.cap.ru/press_center/news";
+
+    @Test
+    void opensAfterFailuresAndClosesOnProbe() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setBreakerFailures(3);
+        prop.setBreakerOpenMs(200);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BreakerTools breakerTools = new BreakerTools(prop, registry);
+
+        breakerTools.onFailure(URL);
+        breakerTools.onFailure(URL);
+        breakerTools.onSuccess(URL);
+        breakerTools.onFailure(URL);
+        breakerTools.onFailure(URL);
+        assertTrue(breakerTools.allow(URL), "успех сбрасывает счёт ошибок");
+
+        breakerTools.onFailure(URL);
+        assertEquals(BreakerTools.State.OPEN, breakerTools.getState(URL));
+        assertFalse(breakerTools.allow(URL));
+        assertEquals(Map.of("gov.cap.ru", BreakerTools.State.OPEN), breakerTools.getTripped());
+        assertEquals(1.0, registry.counter("parser.breaker.rejected", "host", "gov.cap.ru").count());
+
+        // Другой хост не затронут
+        assertTrue(breakerTools.allow("https://minfin.cap.ru/"));
+
+        Thread.sleep(250);
+        assertTrue(breakerTools.allow(URL), "пробный запрос");
+        assertFalse(breakerTools.allow(URL), "проба одна");
+
+        breakerTools.onFailure(URL);
+        assertEquals(BreakerTools.State.OPEN, breakerTools.getState(URL));
+
+        Thread.sleep(250);
+        assertTrue(breakerTools.allow(URL));
+        breakerTools.onSuccess(URL);
+        assertEquals(BreakerTools.State.CLOSED, breakerTools.getState(URL));
+        assertTrue(breakerTools.getTripped().isEmpty());
+    }
+}
@@ -0,0 +1,47 @@
+package ru.ai.narspiprsja.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupToolsTests {
+
+    private static final String URL = "https://gov.cap.ru/press_center/news/1";
+    private static final String OTHER = "https://gov.cap.ru/press_center/news/2";
+
+    @Test
+    void onlyConfirmedArticlesAreRemembered(@TempDir Path dir) {
+        ParserProperty prop = new ParserProperty();
+        prop.setDedupFile(dir.resolve("dedup.tsv").toString());
+
+        DedupTools dedupTools = new DedupTools(prop);
+        dedupTools.load();
+
+        // Не дошла до подтверждения — в следующем цикле снова новая
+        assertTrue(dedupTools.isFresh(URL, "текст"));
+        assertTrue(dedupTools.isFresh(URL, "текст"));
+
+        assertTrue(dedupTools.isFresh(OTHER, "другой текст"));
+        dedupTools.forget(List.of(OTHER));
+        dedupTools.remember(List.of(URL, OTHER));
+
+        assertFalse(dedupTools.isFresh(URL, "текст"));
+        assertTrue(dedupTools.isFresh(URL, "новый текст"));
+        assertTrue(dedupTools.isFresh(OTHER, "другой текст"));
+        assertEquals(1, dedupTools.size());
+        dedupTools.close();
+
+        DedupTools reloaded = new DedupTools(prop);
+        reloaded.load();
+        assertEquals(1, reloaded.size());
+        assertFalse(reloaded.isFresh(URL, "текст"));
+        reloaded.close();
+    }
+}
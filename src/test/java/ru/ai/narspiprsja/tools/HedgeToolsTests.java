@@ -0,0 +1,157 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgeToolsTests {
+
+    private static final String URL = "https://gov.cap.ru/press_center/news/1";
+
+    // Отвечает за 5 мс, кроме запросов с номерами из slow — те за 3 с; все запросы видны в requests
+    private record StubFetcher(AtomicInteger calls, List<CompletableFuture<Fetched>> requests, int... slow)
+            implements PageFetcher {
+        StubFetcher(AtomicInteger calls, int... slow) {
+            this(calls, new CopyOnWriteArrayList<>(), slow);
+        }
+
+        @Override
+        public Fetched fetch(String url, Map<String, String> extraHeaders) throws IOException {
+            return fetchAsync(url, extraHeaders).join();
+        }
+
+        @Override
+        public CompletableFuture<Fetched> fetchAsync(String url, Map<String, String> extraHeaders) {
+            int call = calls.incrementAndGet();
+            long delay = 5;
+            for (int s : slow) if (s == call) delay = 3_000;
+
+            Fetched res = new Fetched(url, 200, Map.of("X-Call", String.valueOf(call)), new byte[0]);
+            CompletableFuture<Fetched> request =
+                    CompletableFuture.supplyAsync(() -> res, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+            requests.add(request);
+            return request;
+        }
+    }
+
+    // Место для дубля: есть или нет, и сколько раз занято и освобождено
+    private static final class Slot implements HedgeTools.HedgeSlot {
+        private final boolean free;
+        private final AtomicInteger acquired = new AtomicInteger();
+        private final AtomicInteger released = new AtomicInteger();
+
+        Slot(boolean free) {
+            this.free = free;
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            if (free) acquired.incrementAndGet();
+            return free;
+        }
+
+        @Override
+        public void release() {
+            released.incrementAndGet();
+        }
+    }
+
+    private static HedgeTools warmed(ParserProperty prop, SimpleMeterRegistry registry, StubFetcher fetcher)
+            throws Exception {
+        prop.setHedgeMinSamples(10);
+        prop.setHedgeMinDelayMs(50);
+        HedgeTools hedgeTools = new HedgeTools(prop, registry);
+
+        Slot slot = new Slot(true);
+        for (int i = 0; i < 10; i++) hedgeTools.fetch(fetcher, URL, Map.of(), slot);
+        assertEquals(0, slot.acquired.get(), "без задержек дубли не нужны");
+        return hedgeTools;
+    }
+
+    @Test
+    void slowRequestIsHedged() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StubFetcher fetcher = new StubFetcher(new AtomicInteger(), 11);
+        HedgeTools hedgeTools = warmed(new ParserProperty(), registry, fetcher);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), hedgeTools.delayNanos(URL));
+
+        Slot slot = new Slot(true);
+        long start = System.nanoTime();
+        Fetched res = hedgeTools.fetch(fetcher, URL, Map.of(), slot);
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("12", res.header("X-Call"), "ответ дубля");
+        assertTrue(took < 1_000, "ожидание " + took + " мс");
+        assertTrue(fetcher.requests().get(10).isCancelled(), "проигравший запрос отменён");
+        assertEquals(1, slot.acquired.get());
+        assertEquals(1, slot.released.get());
+        assertEquals(1.0, registry.counter("parser.fetch.hedges", "outcome", "won").count());
+    }
+
+    @Test
+    void hedgeWaitsForFreeSlot() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        StubFetcher fetcher = new StubFetcher(new AtomicInteger(), 11);
+        HedgeTools hedgeTools = warmed(new ParserProperty(), registry, fetcher);
+
+        // Хост занят: дубль не уходит, ответ — от первого запроса
+        Fetched res = hedgeTools.fetch(fetcher, URL, Map.of(), new Slot(false));
+        assertEquals("11", res.header("X-Call"));
+        assertEquals(11, fetcher.requests().size());
+        assertEquals(1.0, registry.counter("parser.fetch.hedges", "outcome", "skipped").count());
+    }
+
+    @Test
+    void interruptCancelsBothRequests() throws Exception {
+        StubFetcher fetcher = new StubFetcher(new AtomicInteger(), 11, 12);
+        HedgeTools hedgeTools = warmed(new ParserProperty(), new SimpleMeterRegistry(), fetcher);
+
+        Slot slot = new Slot(true);
+        AtomicReference<Exception> thrown = new AtomicReference<>();
+        Thread caller = Thread.ofVirtual().start(() -> {
+            try {
+                hedgeTools.fetch(fetcher, URL, Map.of(), slot);
+            } catch (Exception e) {
+                thrown.set(e);
+            }
+        });
+        while (fetcher.requests().size() < 12) Thread.sleep(5);
+        caller.interrupt();
+        caller.join(1_000);
+
+        assertFalse(caller.isAlive());
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertTrue(fetcher.requests().get(10).isCancelled());
+        assertTrue(fetcher.requests().get(11).isCancelled());
+        assertEquals(1, slot.released.get());
+    }
+
+    @Test
+    void disabledHedgingSendsOneRequest() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setHedgePercentile(0);
+        HedgeTools hedgeTools = new HedgeTools(prop, new SimpleMeterRegistry());
+
+        AtomicInteger calls = new AtomicInteger();
+        StubFetcher fetcher = new StubFetcher(calls);
+        for (int i = 0; i < 30; i++) hedgeTools.fetch(fetcher, URL, Map.of(), new Slot(true));
+
+        assertEquals(-1, hedgeTools.delayNanos(URL));
+        assertEquals(30, calls.get());
+    }
+}
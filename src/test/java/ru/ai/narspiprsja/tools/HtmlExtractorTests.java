@@ -0,0 +1,62 @@
+package ru.ai.narspiprsja.tools;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HtmlExtractorTests {
+
+    private static final String BASE = "https://gov.cap.ru/press_center/news";
+
+    private static final String PAGE = """
+            <html><head><title>Новости</title></head><body>
+            <div class="header"><ul><li>Главная<li>Пресс-центр</ul></div>
+            <div class="content">
+              <div class="news_text"><p>Глава Чувашии провёл совещание.</p>
+                <p>Обсудили <b>ремонт дорог</b> и мостов.<br>Работы начнутся летом.</p>
+                <div class="news_text">Вложенный блок.</div>
+              </div>
+              <div class="news_list">
+                <div class="item_news"><a class="news-list_title" href="/1">Первая</a>
+                  <div class="news-list_date"><span>10:15 | 01.10.2025</span></div></div>
+                <div class="item_news"><a class="news-list_title" href="/2">Вторая</a>
+                  <div class="news-list_date"><span>09:00 | 01.10.2025</span></div></div>
+              </div>
+            </div></body></html>
+            """;
+
+    private static Element extract(String html, String query) throws Exception {
+        return HtmlExtractor.extract(html.getBytes(StandardCharsets.UTF_8), "UTF-8", BASE, query);
+    }
+
+    @Test
+    void blockMatchesDom() throws Exception {
+        for (String query : new String[]{"div.news_text", "div.news_list"}) {
+            Element dom = Jsoup.parse(PAGE, BASE).selectFirst(query);
+            Element streamed = extract(PAGE, query);
+
+            assertEquals(dom.text(), streamed.text(), query);
+            assertEquals(dom.select("a[href]").eachAttr("abs:href"), streamed.select("a[href]").eachAttr("abs:href"), query);
+        }
+    }
+
+    @Test
+    void missingBlockIsNull() throws Exception {
+        assertNull(extract("<html><body><div class=\"news\">Нет блока</div></body></html>", "div.news_text"));
+    }
+
+    @Test
+    void charsetIsTakenFromMeta() throws Exception {
+        Charset cp1251 = Charset.forName("windows-1251");
+        String html = "<html><head><meta charset=\"windows-1251\"></head><body><div class=\"news_text\">Чебоксары</div></body></html>";
+
+        Element block = HtmlExtractor.extract(html.getBytes(cp1251), null, BASE, "div.news_text");
+        assertEquals("Чебоксары", block.text());
+    }
+}
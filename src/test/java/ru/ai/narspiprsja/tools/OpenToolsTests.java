@@ -0,0 +1,132 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.ai.narspiprsja.config.OpenConfig;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenToolsTests {
+
+    private static final List<String> TEXTS = List.of(
+            "Глава Чувашии О.А. Николаев провёл совещание. На нём обсудили ремонт дорог, мостов и т.д. " +
+                    "Работы начнутся 1. июня и продлятся до 15.09.2025 г. включительно.",
+            "В Минздраве Чувашии сообщили, что в 2024 г. построено 12 ФАПов. Проф. Иванов И. И. отметил: " +
+                    "«Это важный шаг». Подробнее см. рис. 2 и табл. 3.",
+            "Минэкономразвития региона подвело итоги. Рост составил 3,5 %; экспорт увеличился. " +
+                    "Зам. министра, канд. экон. наук А. Петров, — о планах на следующий год.",
+            "Заседание прошло в каб. 101 по ул. Московской, д. 5. Присутствовали представители МЧС, МВД и др. " +
+                    "ведомств. Итоги подведут в понедельник."
+    );
+
+    private static OpenTools openTools;
+
+    @BeforeAll
+    static void init() throws Exception {
+        OpenConfig openConfig = new OpenConfig();
+        ReflectionTestUtils.setField(openConfig, "abbreviationsFile", new ClassPathResource("abbreviations.txt"));
+        openConfig.loadAbbreviations();
+
+        openTools = new OpenTools(openConfig, new SimpleMeterRegistry());
+        openTools.init();
+    }
+
+    @Test
+    void detectSentencesIsSafeForConcurrentCallers() throws Exception {
+        List<List<String>> expected = new ArrayList<>();
+        for (String text : TEXTS) {
+            expected.add(openTools.detectSentences(text));
+        }
+
+        int threads = 16;
+        int iterations = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                Callable<Void> job = () -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        int idx = (i + offset) % TEXTS.size();
+                        assertEquals(expected.get(idx), openTools.detectSentences(TEXTS.get(idx)));
+                    }
+                    return null;
+                };
+                futures.add(executor.submit(job));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void chunkSentencesRespectsTokenBudget() {
+        List<String> sentences = new ArrayList<>();
+        for (String text : TEXTS) {
+            sentences.addAll(openTools.detectSentences(text));
+        }
+
+        List<String> single = openTools.chunkSentences(sentences, 0, 0);
+        assertEquals(List.of(String.join(" ", sentences)), single);
+
+        int maxTokens = 12;
+        List<String> chunks = openTools.chunkSentences(sentences, maxTokens, 4);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(openTools.countTokens(chunk) <= maxTokens, chunk);
+        }
+        assertTrue(chunks.getLast().endsWith("понедельник."));
+    }
+
+    @Test
+    void normalizeTextMatchesRegexChain() {
+        List<String> inputs = List.of(
+                "",
+                "  Глава\u00A0Чувашии \t\r\n провёл\u200Bсовещание  ",
+                "«Ёлки» – “палки” — \u0000\u0001 конец\uD800",
+                "Без изменений. Совсем.",
+                "e\u0301 и смайлик \uD83D\uDE00  в конце\f"
+        );
+
+        for (String input : inputs) {
+            String t = Normalizer.normalize(input, Normalizer.Form.NFC);
+            t = t.replaceAll("[\\p{C}&&[^\r\n\t]]+", " ");
+            t = t.replace('\u2013', '-').replace('\u2014', '-');
+            t = t.replace('«', '"').replace('»', '"').replace('“', '"').replace('”', '"');
+            t = t.replaceAll("\\s+", " ").trim();
+
+            assertEquals(t, openTools.normalizeText(input), input);
+        }
+    }
+
+    @Test
+    void mergeShortChunksGluesToPrevious() {
+        List<String> chunks = new ArrayList<>(List.of(" Первый длинный чанк. ", "кор", "  ещё ", "Второй длинный чанк."));
+        chunks.add(1, null);
+        chunks.add(" \n");
+
+        assertEquals(List.of("Первый длинный чанк. кор   ещё", "Второй длинный чанк."),
+                openTools.mergeShortChunks(chunks, 10));
+    }
+}
@@ -0,0 +1,312 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ai.narspiprsja.model.Fetched;
+import ru.ai.narspiprsja.model.Url;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserToolsTests {
+
+    private static final String ETAG = "\"news-1\"";
+    private static final int PAGES = 7;
+    private static final String LISTING = """
+            <html><body><div class="news_list">
+              <div class="item_news">
+                <a class="news-list_title" href="/1">Первая</a>
+                <div class="news-list_date"><span>10:15 | 01.10.2025</span></div>
+              </div>
+              <div class="item_news">
+                <a class="news-list_title" href="/2">Вторая</a>
+                <div class="news-list_date"><span>09:00 | 01.10.2025</span></div>
+              </div>
+            </div></body></html>
+            """;
+
+    private HttpServer server;
+    private ParserProperty prop;
+
+    private final AtomicInteger full = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger paged = new AtomicInteger();
+    private final AtomicInteger failingPage = new AtomicInteger();
+    private final CountDownLatch dropped = new CountDownLatch(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void init(@TempDir Path dir) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            full.incrementAndGet();
+            byte[] body = LISTING.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Лента из PAGES страниц по одной новости, дальше пустой news_list
+        server.createContext("/paged/", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            int page = Integer.parseInt(query.substring(query.indexOf("page=") + 5));
+            paged.incrementAndGet();
+            if (page == failingPage.get()) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+
+            String item = page > PAGES ? "" : """
+                    <div class="item_news"><a class="news-list_title" href="/%d">Новость</a>
+                    <div class="news-list_date"><span>10:%02d | 01.10.2025</span></div></div>
+                    """.formatted(page, 60 - page);
+            byte[] body = ("<html><body><div class=\"news_list\">" + item + "</div></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Страница, которая отдаётся по байту, пока клиент не оборвёт соединение
+        server.createContext("/stall/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 250; i++) {
+                    out.write(' ');
+                    out.flush();
+                    Thread.sleep(20);
+                }
+            } catch (IOException e) {
+                dropped.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        // Страница без Content-Type
+        server.createContext("/bare/", exchange -> {
+            byte[] body = LISTING.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        prop = new ParserProperty();
+        prop.setDate("01.10.2025");
+        prop.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/%s/news");
+        prop.setDedupCapacity(0);
+        prop.setMarkFile(dir.resolve("marks.json").toString());
+    }
+
+    private ParserTools parserTools(PageFetcher fetcher) {
+        return parserTools(fetcher, new MarkTools(prop, new ObjectMapper()));
+    }
+
+    private ParserTools parserTools(PageFetcher fetcher, MarkTools markTools) {
+        return parserTools(fetcher, markTools, new BreakerTools(prop, meterRegistry));
+    }
+
+    private ParserTools parserTools(PageFetcher fetcher, BreakerTools breakerTools) {
+        return parserTools(fetcher, new MarkTools(prop, new ObjectMapper()), breakerTools);
+    }
+
+    private ParserTools parserTools(PageFetcher fetcher, MarkTools markTools, BreakerTools breakerTools) {
+        return new ParserTools(prop, null, markTools, new DedupTools(prop), fetcher,
+                new RateTools(prop), breakerTools, new HedgeTools(prop, meterRegistry),
+                new ArchiveTools(prop), meterRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedListingIsServedFromValidators() {
+        assertNotModified(parserTools(new HttpClientFetcher(prop)));
+    }
+
+    @Test
+    void jsoupFallbackHandlesValidatorsToo() {
+        assertNotModified(parserTools(new JsoupFetcher()));
+    }
+
+    @Test
+    void prefetchedListingKeepsPageOrder() {
+        String listing = "http://127.0.0.1:" + server.getAddress().getPort() + "/paged/%s/news";
+        prop.setBaseUrl(listing);
+        prop.setRateInitial(1_000);
+        prop.setRateMax(1_000);
+        prop.setRateBurst(100);
+
+        List<String> expected = new ArrayList<>();
+        for (int page = 1; page <= PAGES; page++) expected.add(listing.formatted("gov") + "/" + page);
+
+        for (int window : new int[]{1, 3, 20}) {
+            prop.setListingPrefetch(window);
+            List<String> links = parserTools(new HttpClientFetcher(prop)).parseNewsPage("gov").orElseThrow().stream()
+                    .map(Url::link)
+                    .toList();
+            assertEquals(expected, links, "window " + window);
+        }
+    }
+
+    @Test
+    void seenListingFetchesOnePage() {
+        String listing = "http://127.0.0.1:" + server.getAddress().getPort() + "/paged/%s/news";
+        prop.setBaseUrl(listing);
+        prop.setListingPrefetch(20);
+        prop.setRateInitial(1_000);
+        prop.setRateMax(1_000);
+        prop.setRateBurst(100);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        MarkTools markTools = new MarkTools(prop, mapper);
+        ParserTools parserTools = parserTools(new HttpClientFetcher(prop), markTools);
+
+        List<Url> first = parserTools.parseNewsPage("gov").orElseThrow();
+        assertEquals(PAGES, first.size());
+        markTools.advance("gov", first);
+
+        // Новостей с прошлого обхода нет: окно не растёт, лента не грузится наперёд
+        paged.set(0);
+        assertTrue(parserTools.parseNewsPage("gov").orElseThrow().isEmpty());
+        assertEquals(1, paged.get());
+    }
+
+    @Test
+    void failedPageAbortsListingAndKeepsMark() {
+        String listing = "http://127.0.0.1:" + server.getAddress().getPort() + "/paged/%s/news";
+        prop.setBaseUrl(listing);
+        prop.setListingPrefetch(4);
+        prop.setRateInitial(1_000);
+        prop.setRateMax(1_000);
+        prop.setRateBurst(100);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        MarkTools markTools = new MarkTools(prop, mapper);
+        ParserTools parserTools = parserTools(new HttpClientFetcher(prop), markTools);
+
+        // Сбой сервера на странице 3 — не конец ленты: обход прерван, отметка не двигается
+        failingPage.set(3);
+        assertTrue(parserTools.parseNewsPage("gov").isEmpty());
+        Url oldest = new Url(listing.formatted("gov") + "/" + PAGES, LocalDateTime.of(2025, 10, 1, 10, 60 - PAGES));
+        assertFalse(markTools.isSeen("gov", oldest));
+
+        failingPage.set(0);
+        assertEquals(PAGES, parserTools.parseNewsPage("gov").orElseThrow().size());
+    }
+
+    @Test
+    void pageWithoutContentTypeIsParsed() {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/bare/news";
+        assertTrue(parserTools(new HttpClientFetcher(prop)).fetchPage(url).isPresent());
+    }
+
+    @Test
+    void timeoutTripsBreakerButCancellationDoesNot() {
+        prop.setBreakerFailures(1);
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/news";
+
+        // Отменённый запрос: поток прерван, InterruptedIOException — хост не отключается
+        BreakerTools cancelled = new BreakerTools(prop, meterRegistry);
+        assertTrue(parserTools(failingFetcher(() -> {
+            Thread.currentThread().interrupt();
+            return new InterruptedIOException("cancelled");
+        }), cancelled).fetchPage(url).isEmpty());
+        assertTrue(Thread.interrupted());
+        assertEquals(BreakerTools.State.CLOSED, cancelled.getState(url));
+
+        // Таймаут чтения — тоже InterruptedIOException, но это отказ хоста
+        BreakerTools timedOut = new BreakerTools(prop, meterRegistry);
+        assertTrue(parserTools(failingFetcher(() -> new SocketTimeoutException("Read timed out")), timedOut)
+                .fetchPage(url).isEmpty());
+        assertEquals(BreakerTools.State.OPEN, timedOut.getState(url));
+    }
+
+    @Test
+    void cancelledJsoupRequestDropsConnection() throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/stall/news";
+        JsoupFetcher fetcher = new JsoupFetcher();
+        try {
+            CompletableFuture<Fetched> request = fetcher.fetchAsync(url, Map.of());
+            Thread.sleep(200);
+            assertFalse(request.isDone());
+
+            request.cancel(true);
+            assertTrue(dropped.await(3, TimeUnit.SECONDS), "соединение отменённого запроса закрыто");
+        } finally {
+            fetcher.shutdown();
+        }
+    }
+
+    private static PageFetcher failingFetcher(Supplier<IOException> error) {
+        return new PageFetcher() {
+            @Override
+            public Fetched fetch(String url, Map<String, String> extraHeaders) throws IOException {
+                throw error.get();
+            }
+
+            @Override
+            public CompletableFuture<Fetched> fetchAsync(String url, Map<String, String> extraHeaders) {
+                return CompletableFuture.failedFuture(error.get());
+            }
+        };
+    }
+
+    private void assertNotModified(ParserTools parserTools) {
+        List<Url> first = parserTools.refactorPage("gov", 1);
+        List<Url> second = parserTools.refactorPage("gov", 1);
+
+        assertEquals(2, first.size());
+        assertEquals(first, second);
+        assertEquals(1, full.get());
+        assertEquals(1, notModified.get());
+        assertEquals(1, parserTools.getNotModified());
+
+        // Каждый ответ попадает в таймер загрузки со своим кодом
+        assertEquals(1, meterRegistry.get("parser.fetch").tags("host", "127.0.0.1", "status", "200").timer().count());
+        assertEquals(1, meterRegistry.get("parser.fetch").tags("host", "127.0.0.1", "status", "304").timer().count());
+    }
+}
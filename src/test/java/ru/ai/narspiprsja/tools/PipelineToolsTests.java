@@ -0,0 +1,98 @@
+package ru.ai.narspiprsja.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineToolsTests {
+
+    private static final int ARTICLES = 20;
+
+    private final CountDownLatch brokerUp = new CountDownLatch(1);
+    private final List<Page> published = new ArrayList<>();
+
+    private PipelineTools pipelineTools;
+
+    @AfterEach
+    void stop() {
+        pipelineTools.shutdown();
+    }
+
+    @Test
+    void slowPublishingStopsNewFetches() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setFetchConcurrency(2);
+        prop.setNlpThreads(1);
+        prop.setNlpQueueCapacity(1);
+        prop.setPublishQueueCapacity(1);
+
+        ParserTools parserTools = new ParserTools(prop, null, null, null, null, null, null, null, null, null) {
+            @Override
+            public Optional<String> fetchArticleText(long postId, String url) {
+                return url.endsWith("/0") ? Optional.empty() : Optional.of("Текст " + url);
+            }
+
+            @Override
+            public Optional<Page> parseArticleText(long postId, String url, String text) {
+                return Optional.of(new Page(postId, url, List.of(text)));
+            }
+        };
+        PublishTools publishTools = new PublishTools(prop, null, null, null, null, null) {
+            @Override
+            public CompletableFuture<Void> submit(Page page) {
+                try {
+                    brokerUp.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                synchronized (published) {
+                    published.add(page);
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        pipelineTools = new PipelineTools(prop, parserTools, publishTools, new SimpleMeterRegistry());
+        pipelineTools.init();
+
+        AtomicInteger submitted = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Thread crawler = Thread.startVirtualThread(() -> {
+            try {
+                for (int i = 0; i < ARTICLES; i++) {
+                    CompletableFuture<Void> done = pipelineTools.submit(i, "https://gov.cap.ru/news/" + i).delivered();
+                    synchronized (futures) {
+                        futures.add(done);
+                    }
+                    submitted.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // Брокер стоит: очереди заполнены, новые загрузки не запускаются
+        Thread.sleep(300);
+        assertTrue(submitted.get() < ARTICLES, "submitted " + submitted.get());
+        assertTrue(crawler.isAlive());
+
+        brokerUp.countDown();
+        crawler.join(5_000);
+        assertEquals(ARTICLES, submitted.get());
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(ARTICLES - 1, published.size());
+    }
+}
@@ -0,0 +1,105 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import ru.ai.narspiprsja.body.PageReq;
+import ru.ai.narspiprsja.config.RabbitConfig;
+import ru.ai.narspiprsja.model.Page;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishToolsTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Отправленные пачки; подтверждение каждой тест выдаёт сам
+    private final BlockingQueue<CorrelationData> sent = new LinkedBlockingQueue<>();
+
+    private Path spill;
+    private Path replay;
+    private PublishTools publishTools;
+
+    @BeforeEach
+    void init(@TempDir Path dir) throws Exception {
+        spill = dir.resolve("spill.jsonl");
+        replay = dir.resolve("spill.jsonl.replay");
+
+        PageReq req = new PageReq(UUID.randomUUID(), List.of(new Page(1, "https://gov.cap.ru/news/1", List.of("text"))));
+        Files.writeString(spill, mapper.writeValueAsString(req) + System.lineSeparator());
+    }
+
+    private void start() {
+        ParserProperty prop = new ParserProperty();
+        prop.setDedupCapacity(0);
+        prop.setPublishAttempts(1);
+        prop.setPublishSpillFile(spill.toString());
+        prop.setPublishReplayMs(60_000);
+
+        RabbitTemplate rabbitTemplate = new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String exchange, String routingKey, Object message, CorrelationData correlation) {
+                sent.add(correlation);
+            }
+        };
+        publishTools = new PublishTools(prop, new DedupTools(prop), new RabbitConfig(), rabbitTemplate, mapper,
+                new SimpleMeterRegistry());
+        publishTools.init();
+    }
+
+    @AfterEach
+    void stop() {
+        if (publishTools != null) publishTools.shutdown();
+    }
+
+    @Test
+    void replayedSpillIsKeptUntilConfirmed() throws Exception {
+        start();
+        CorrelationData correlation = sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(correlation);
+
+        // Пачка ушла, но брокер её ещё не подтвердил: остановка сейчас не должна её потерять
+        assertTrue(Files.exists(replay));
+        assertFalse(Files.exists(spill));
+
+        correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+        assertTrue(await(() -> !Files.exists(replay)), "повторённый буфер удалён после подтверждения");
+    }
+
+    @Test
+    void rejectedReplayMovesToNewSpill() throws Exception {
+        start();
+        CorrelationData correlation = sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(correlation);
+
+        correlation.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+        assertTrue(await(() -> !Files.exists(replay)), "повторённый буфер удалён, когда пачка снова в буфере");
+        assertTrue(Files.exists(spill));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
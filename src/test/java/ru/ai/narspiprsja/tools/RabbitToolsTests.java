@@ -0,0 +1,213 @@
+package ru.ai.narspiprsja.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.AmqpIOException;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import ru.ai.narspiprsja.body.SiteTask;
+import ru.ai.narspiprsja.body.UrlsReq;
+import ru.ai.narspiprsja.body.UrlsRes;
+import ru.ai.narspiprsja.config.RabbitConfig;
+import ru.ai.narspiprsja.model.Site;
+import ru.ai.narspiprsja.model.Url;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RabbitToolsTests {
+
+    private static final String PART = "gov";
+    private static final List<Url> URLS = List.of(
+            new Url("https://gov.cap.ru/news/2", LocalDateTime.of(2025, 10, 1, 10, 0)),
+            new Url("https://gov.cap.ru/news/1", LocalDateTime.of(2025, 10, 1, 9, 0)));
+
+    private ParserProperty prop;
+    private MarkTools markTools;
+
+    // Статьи, которые загружены здесь же, и те, что не дойдут до брокера
+    private final List<String> local = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean listingBroken;
+
+    @BeforeEach
+    void init(@TempDir Path dir) {
+        prop = new ParserProperty();
+        prop.setMarkFile(dir.resolve("marks.json").toString());
+        prop.setDedupCapacity(0);
+
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        markTools = new MarkTools(prop, mapper);
+    }
+
+    private RabbitTools rabbitTools(WorkTools workTools, LeaseTools leaseTools) {
+        ParserTools parserTools = new ParserTools(prop, null, null, null, null, null, null, null, null, null) {
+            @Override
+            public Optional<List<Url>> parseNewsPage(String part) {
+                if (listingBroken) return Optional.empty();
+                return Optional.of(URLS.stream().filter(url -> !markTools.isSeen(part, url)).toList());
+            }
+        };
+        PipelineTools pipelineTools = new PipelineTools(prop, parserTools, null, null) {
+            @Override
+            public Progress submit(long postId, String url) {
+                local.add(url);
+                CompletableFuture<Void> delivered = failing.contains(url)
+                        ? CompletableFuture.failedFuture(new IOException("HTTP 503"))
+                        : CompletableFuture.completedFuture(null);
+                return new Progress(delivered, delivered);
+            }
+        };
+        PublishTools publishTools = new PublishTools(prop, null, null, null, null, null) {
+            @Override
+            public void flush() {
+            }
+        };
+
+        return new RabbitTools(parserTools, markTools, new DedupTools(prop), publishTools, pipelineTools,
+                workTools, leaseTools, prop, null, null, new SimpleMeterRegistry()) {
+            @Override
+            public CompletableFuture<Optional<UrlsRes>> urlsSendAndReceive(UrlsReq req) {
+                List<Site> sites = new ArrayList<>();
+                for (Url url : req.data()) sites.add(new Site((long) sites.size(), url.link()));
+                return CompletableFuture.completedFuture(Optional.of(new UrlsRes(req.uuid(), sites)));
+            }
+        };
+    }
+
+    @Test
+    void markWaitsForEveryArticle() {
+        RabbitTools rabbitTools = rabbitTools(null, null);
+
+        failing.add(URLS.get(1).link());
+        rabbitTools.parseUrls(PART).join();
+        assertEquals(2, local.size());
+        assertFalse(markTools.isSeen(PART, URLS.get(0)), "статья не дошла — отметка на месте");
+
+        failing.clear();
+        local.clear();
+        rabbitTools.parseUrls(PART).join();
+        assertEquals(2, local.size());
+        assertTrue(markTools.isSeen(PART, URLS.get(0)));
+        assertTrue(markTools.isSeen(PART, URLS.get(1)));
+    }
+
+    @Test
+    void brokenListingKeepsMark() {
+        RabbitTools rabbitTools = rabbitTools(null, null);
+
+        listingBroken = true;
+        rabbitTools.parseUrls(PART).join();
+        assertTrue(local.isEmpty());
+        assertFalse(markTools.isSeen(PART, URLS.get(0)));
+    }
+
+    @Test
+    void failedDispatchFallsBackToLocalParsing() {
+        prop.setDispatch("queue");
+        List<SiteTask> sent = new ArrayList<>();
+        // Брокер принимает первую задачу и обрывается на второй
+        RabbitTemplate template = new RabbitTemplate() {
+            @Override
+            public void convertAndSend(String exchange, String routingKey, Object object) {
+                if (!sent.isEmpty()) throw new AmqpConnectException(new IOException("connection reset"));
+                sent.add((SiteTask) object);
+            }
+        };
+        WorkTools workTools = new WorkTools(null, new RabbitConfig(), template, new SimpleMeterRegistry());
+
+        rabbitTools(workTools, lease(true)).parseUrls(PART).join();
+        assertEquals(1, sent.size());
+        assertEquals(URLS.get(0).link(), sent.get(0).site().source());
+        assertEquals(List.of(URLS.get(1).link()), local, "остаток части загружен на месте");
+        assertTrue(markTools.isSeen(PART, URLS.get(0)));
+    }
+
+    @Test
+    void partIsSkippedWithoutLease() {
+        prop.setDispatch("queue");
+
+        rabbitTools(null, lease(false)).parseUrls(PART).join();
+        assertTrue(local.isEmpty());
+        assertFalse(markTools.isSeen(PART, URLS.get(0)));
+    }
+
+    @Test
+    void leaseFollowsQueueDeclaration() {
+        LeaseTools held = lease(true);
+        assertTrue(held.hold(PART));
+        assertTrue(held.hold(PART), "повторное объявление тем же соединением проходит");
+        assertFalse(lease(false).hold(PART));
+    }
+
+    private static LeaseTools lease(boolean free) {
+        RabbitTemplate template = new RabbitTemplate() {
+            @Override
+            public <T> T execute(ChannelCallback<T> action) {
+                if (!free) throw new AmqpIOException(new IOException("RESOURCE_LOCKED"));
+                return null;
+            }
+        };
+        return new LeaseTools(new RabbitConfig(), template);
+    }
+
+    @Test
+    void siteTaskIsAckedOnlyAfterDelivery() throws Exception {
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        PipelineTools pipelineTools = new PipelineTools(prop, null, null, null) {
+            @Override
+            public Progress submit(long postId, String url) {
+                return new Progress(CompletableFuture.completedFuture(null), delivered);
+            }
+        };
+        WorkTools workTools = new WorkTools(pipelineTools, new RabbitConfig(), null, new SimpleMeterRegistry());
+
+        // Канал записывает только подтверждения
+        List<String> acks = Collections.synchronizedList(new ArrayList<>());
+        Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("basic")) acks.add(method.getName() + " " + args[0]);
+                    return null;
+                });
+
+        SiteTask task = new SiteTask(UUID.randomUUID(), PART, new Site(1L, URLS.get(0).link()));
+        workTools.onSiteTask(task, channel, 7);
+        assertTrue(acks.isEmpty(), "статья в пачке, но не подтверждена брокером");
+
+        delivered.complete(null);
+        assertEquals(List.of("basicAck 7"), acks);
+
+        CompletableFuture<Void> lost = new CompletableFuture<>();
+        PipelineTools losing = new PipelineTools(prop, null, null, null) {
+            @Override
+            public Progress submit(long postId, String url) {
+                return new Progress(CompletableFuture.completedFuture(null), lost);
+            }
+        };
+        new WorkTools(losing, new RabbitConfig(), null, new SimpleMeterRegistry()).onSiteTask(task, channel, 8);
+        lost.completeExceptionally(new IOException("batch lost"));
+        assertEquals(List.of("basicAck 7", "basicNack 8"), acks);
+    }
+}
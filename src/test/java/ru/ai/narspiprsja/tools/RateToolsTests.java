@@ -0,0 +1,71 @@
+package ru.ai.narspiprsja.tools;
+
+import org.junit.jupiter.api.Test;
+import ru.ai.narspiprsja.property.ParserProperty;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateToolsTests {
+
+    private static final String URL = "https://gov.cap.ru/press_center/news";
+
+    @Test
+    void rateFollowsAimd() {
+        RateTools rateTools = new RateTools(new ParserProperty());
+
+        rateTools.onResponse(URL, 200, 0, null);
+        assertEquals(8.5, rateTools.getRate(URL), 1e-9);
+
+        rateTools.onResponse(URL, 429, 0, null);
+        assertEquals(4.25, rateTools.getRate(URL), 1e-9);
+
+        rateTools.onFailure(URL);
+        assertEquals(2.125, rateTools.getRate(URL), 1e-9);
+
+        // Другой хост не затронут
+        assertEquals(8.0, rateTools.getRate("https://minfin.cap.ru/"), 1e-9);
+    }
+
+    @Test
+    void retryAfterPausesHost() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setRateMax(1_000);
+        prop.setRateInitial(1_000);
+        RateTools rateTools = new RateTools(prop);
+
+        rateTools.onResponse(URL, 503, 0, "1");
+
+        long start = System.nanoTime();
+        rateTools.acquire(URL);
+        long waited = System.nanoTime() - start;
+
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(900), "ожидание " + waited);
+    }
+
+    @Test
+    void retryAfterAcceptsHttpDate() {
+        assertEquals(TimeUnit.SECONDS.toNanos(120), RateTools.retryAfterNanos("120"));
+        assertEquals(0, RateTools.retryAfterNanos("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertEquals(0, RateTools.retryAfterNanos("later"));
+    }
+
+    @Test
+    void retryAfterPauseIsCapped() throws Exception {
+        ParserProperty prop = new ParserProperty();
+        prop.setRateMax(1_000);
+        prop.setRateInitial(1_000);
+        prop.setRateRetryAfterMaxMs(100);
+        RateTools rateTools = new RateTools(prop);
+
+        rateTools.onResponse(URL, 429, 0, "3600");
+
+        long start = System.nanoTime();
+        rateTools.acquire(URL);
+        long waited = System.nanoTime() - start;
+
+        assertTrue(waited < TimeUnit.SECONDS.toNanos(5), "ожидание " + waited);
+    }
+}